@@ -0,0 +1,127 @@
+package fr.dgrandemange.txnmgr.flow.docgen.benchmarks;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.dgrandemange.txnmgr.flow.docgen.ContextMgmtInfoPopulatorMojoImpl;
+import fr.dgrandemange.txnmgr.flow.docgen.SyntheticTxnMgrConfig;
+import fr.dgrandemange.txnmgrworkflow.model.ParticipantInfo;
+import fr.dgrandemange.txnmgrworkflow.service.support.FacadeImpl;
+
+/**
+ * Participant annotations resolution over many synthetic participant classes,
+ * each one annotated with <code>@UpdateContextRules</code><br>
+ * "cold" uses a new populator on each invocation (annotations resolved by
+ * reflection, as on a first docgen execution), "warm" reuses the same one
+ * (annotations taken from its cache, as in watch mode)<br>
+ * 
+ * @author dgrandemange
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnnotationResolutionBenchmark {
+
+	/**
+	 * Number of groups of 10 participants
+	 */
+	@Param({ "10", "100" })
+	private int groups;
+
+	private File workDir;
+
+	private URLClassLoader classLoader;
+
+	private final Log log = new SystemStreamLog();
+
+	/**
+	 * Participants by group, as given to the populator by the workflow
+	 * library
+	 */
+	private Map<String, List<ParticipantInfo>> participants;
+
+	private ContextMgmtInfoPopulatorMojoImpl warmPopulator;
+
+	@Setup
+	public void setUp() throws Exception {
+		workDir = Files.createTempDirectory("docgen-bench").toFile();
+		File configFile = new SyntheticTxnMgrConfig().groups(groups)
+				.participantsPerGroup(10).compileClasses(true).write(workDir);
+		classLoader = new URLClassLoader(new URL[] { new File(workDir,
+				SyntheticTxnMgrConfig.CLASSES_DIRNAME).toURI().toURL() },
+				getClass().getClassLoader());
+
+		RecordingPopulator recorder = new RecordingPopulator(classLoader, log);
+		new FacadeImpl().getGraph(configFile.toURI().toURL(), recorder);
+		if (recorder.participants == null) {
+			throw new IllegalStateException(
+					"participants have not been given to the populator");
+		}
+		participants = recorder.participants;
+
+		warmPopulator = new ContextMgmtInfoPopulatorMojoImpl(classLoader, log);
+		warmPopulator.processParticipantAnnotations(participants);
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		classLoader.close();
+		SyntheticTxnMgrConfig.delete(workDir);
+	}
+
+	@Benchmark
+	public Object cold() {
+		ContextMgmtInfoPopulatorMojoImpl populator = new ContextMgmtInfoPopulatorMojoImpl(
+				classLoader, log);
+		populator.processParticipantAnnotations(participants);
+		return populator;
+	}
+
+	@Benchmark
+	public Object warm() {
+		warmPopulator.processParticipantAnnotations(participants);
+		return warmPopulator;
+	}
+
+	/**
+	 * Records the participants the workflow library asks to process
+	 */
+	static class RecordingPopulator extends ContextMgmtInfoPopulatorMojoImpl {
+		Map<String, List<ParticipantInfo>> participants;
+
+		RecordingPopulator(ClassLoader classLoader, Log log) {
+			super(classLoader, log);
+		}
+
+		@Override
+		public void processParticipantAnnotations(
+				Map<String, List<ParticipantInfo>> jPosTxnMgrGroups) {
+			this.participants = jPosTxnMgrGroups;
+			super.processParticipantAnnotations(jPosTxnMgrGroups);
+		}
+	}
+}
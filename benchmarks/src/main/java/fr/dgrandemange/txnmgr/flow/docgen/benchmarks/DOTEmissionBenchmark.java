@@ -0,0 +1,105 @@
+package fr.dgrandemange.txnmgr.flow.docgen.benchmarks;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.dgrandemange.txnmgr.flow.docgen.ContextMgmtInfoPopulatorMojoImpl;
+import fr.dgrandemange.txnmgr.flow.docgen.DocGenMojo;
+import fr.dgrandemange.txnmgr.flow.docgen.SyntheticTxnMgrConfig;
+import fr.dgrandemange.txnmgrworkflow.model.Graph;
+import fr.dgrandemange.txnmgrworkflow.service.support.FacadeImpl;
+import fr.dgrandemange.txnmgrworkflow.service.support.GraphConverterServiceImpl;
+import fr.dgrandemange.txnmgrworkflow.service.support.LabelFactoryVelocityImpl;
+import fr.dgrandemange.txnmgrworkflow.service.support.TooltipFactoryVelocityImpl;
+
+/**
+ * DOT emission of graphs of increasing size, in memory (graph converter only)
+ * and to a file (as done by the docgen goal)<br>
+ * 
+ * @author dgrandemange
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DOTEmissionBenchmark {
+
+	/**
+	 * Number of groups of 10 participants
+	 */
+	@Param({ "1", "10", "100" })
+	private int groups;
+
+	private File workDir;
+
+	private Graph graph;
+
+	private GraphConverterServiceImpl converter;
+
+	private BenchmarkedDocGenMojo mojo;
+
+	@Setup
+	public void setUp() throws Exception {
+		workDir = Files.createTempDirectory("docgen-bench").toFile();
+		File configFile = new SyntheticTxnMgrConfig().groups(groups)
+				.participantsPerGroup(10).write(workDir);
+		graph = new FacadeImpl().getGraph(configFile.toURI().toURL(),
+				new ContextMgmtInfoPopulatorMojoImpl(null,
+						new SystemStreamLog()));
+
+		converter = new GraphConverterServiceImpl();
+		converter.setLabelFactory(new LabelFactoryVelocityImpl());
+		converter.setToolTipFactory(new TooltipFactoryVelocityImpl());
+
+		mojo = new BenchmarkedDocGenMojo();
+	}
+
+	@TearDown
+	public void tearDown() {
+		SyntheticTxnMgrConfig.delete(workDir);
+	}
+
+	@Benchmark
+	public int convertGraphToDOT() {
+		StringWriter sw = new StringWriter();
+		PrintWriter pw = new PrintWriter(sw);
+		converter.convertGraphToDOT("bench", graph, pw);
+		pw.flush();
+		return sw.getBuffer().length();
+	}
+
+	@Benchmark
+	public String createDOTFile() {
+		return mojo.emitDOT(graph, workDir);
+	}
+
+	/**
+	 * Gives access to DOT file creation
+	 */
+	static class BenchmarkedDocGenMojo extends DocGenMojo {
+		String emitDOT(Graph graph, File outputDir) {
+			return createDOTFile(graph, "root.dot", "bench",
+					outputDir.getAbsolutePath());
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package fr.dgrandemange.txnmgr.flow.docgen.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.developpez.adiguba.shell.ProcessConsumer;
+
+/**
+ * Throughput of a child process output copy, by buffer size and destination
+ * kind : "chars" (decoded to an Appendable), "bytes" (copied to an
+ * OutputStream) and "file" (transferred to a FileOutputStream)<br>
+ * Child process writes <code>size</code> zero bytes (requires a Unix like
+ * system, for <code>head</code> and <code>/dev/zero</code>)<br>
+ * 
+ * @author dgrandemange
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProcessConsumerDumpBenchmark {
+
+	@Param({ "1024", "8192", "65536" })
+	private int bufferSize;
+
+	@Param({ "chars", "bytes", "file" })
+	private String destination;
+
+	@Param({ "67108864" })
+	private long size;
+
+	@Benchmark
+	public long dump() throws IOException {
+		ProcessConsumer consumer = new ProcessConsumer(new ProcessBuilder(
+				"head", "-c", Long.toString(size), "/dev/zero"))
+				.bufferSize(bufferSize).error(new ByteArrayOutputStream());
+
+		if ("chars".equals(destination)) {
+			CountingAppendable out = new CountingAppendable();
+			consumer.output(out).consume();
+			return out.count;
+		} else if ("bytes".equals(destination)) {
+			CountingOutputStream out = new CountingOutputStream();
+			consumer.output(out).consume();
+			return out.count;
+		} else {
+			return consumer.output(new FileOutputStream("/dev/null"))
+					.consume();
+		}
+	}
+
+	static class CountingAppendable implements Appendable {
+		long count;
+
+		public Appendable append(CharSequence csq) {
+			count += csq.length();
+			return this;
+		}
+
+		public Appendable append(CharSequence csq, int start, int end) {
+			count += end - start;
+			return this;
+		}
+
+		public Appendable append(char c) {
+			count++;
+			return this;
+		}
+	}
+
+	static class CountingOutputStream extends OutputStream {
+		long count;
+
+		@Override
+		public void write(int b) {
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			count += len;
+		}
+	}
+}
@@ -0,0 +1,260 @@
+package fr.dgrandemange.txnmgr.flow.docgen.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+import fr.dgrandemange.txnmgr.flow.docgen.DocGenMojo;
+import fr.dgrandemange.txnmgr.flow.docgen.JsonWriter;
+import fr.dgrandemange.txnmgr.flow.docgen.SyntheticTxnMgrConfig;
+
+/**
+ * End to end scale suite : runs the docgen goal against synthetic
+ * configurations of increasing size (1k, 10k and 50k participants by
+ * default), recording duration and peak heap of each run<br>
+ * Exits with status 1 when a run fails or exceeds the given limits, so that
+ * the maximum supported size is guarded<br>
+ * <br>
+ * 
+ * <pre>
+ * java -Xmx4g -cp benchmarks/target/benchmarks.jar fr.dgrandemange.txnmgr.flow.docgen.benchmarks.ScaleSuite \
+ *   [-sizes 1000,10000,50000] [-maxSeconds n] [-maxHeapMb n] [-dot path] [-report file]
+ * </pre>
+ * 
+ * @author dgrandemange
+ * 
+ */
+public class ScaleSuite {
+
+	private static final String USAGE = "Usage : ScaleSuite [-sizes <n,...>] [-maxSeconds <n>] [-maxHeapMb <n>] [-dot <path>] [-report <file>]";
+
+	/**
+	 * Participants per group of the generated configurations
+	 */
+	private static final int PARTICIPANTS_PER_GROUP = 10;
+
+	/**
+	 * Fan-out of the nested selectors of the generated configurations
+	 */
+	private static final int FAN_OUT = 4;
+
+	/**
+	 * Nesting depth of the generated configurations
+	 */
+	private static final int DEPTH = 2;
+
+	private int[] sizes = { 1000, 10000, 50000 };
+
+	private long maxSeconds = 0;
+
+	private long maxHeapMb = 0;
+
+	private String dotCmdPath;
+
+	private File reportFile = new File("scale-report.json");
+
+	public static void main(String[] args) {
+		ScaleSuite suite = new ScaleSuite();
+		try {
+			for (int i = 0; i < args.length; i++) {
+				String arg = args[i];
+				if (i + 1 >= args.length) {
+					throw new IllegalArgumentException(String.format(
+							"missing value for '%s'", arg));
+				}
+				String value = args[++i];
+				if ("-sizes".equals(arg)) {
+					String[] items = value.split(",");
+					suite.sizes = new int[items.length];
+					for (int j = 0; j < items.length; j++) {
+						suite.sizes[j] = Integer.parseInt(items[j].trim());
+					}
+				} else if ("-maxSeconds".equals(arg)) {
+					suite.maxSeconds = Long.parseLong(value);
+				} else if ("-maxHeapMb".equals(arg)) {
+					suite.maxHeapMb = Long.parseLong(value);
+				} else if ("-dot".equals(arg)) {
+					suite.dotCmdPath = value;
+				} else if ("-report".equals(arg)) {
+					suite.reportFile = new File(value);
+				} else {
+					throw new IllegalArgumentException(String.format(
+							"unknown option '%s'", arg));
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(2);
+		}
+
+		try {
+			System.exit(suite.run() ? 0 : 1);
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * @return whether all runs succeeded within limits
+	 */
+	public boolean run() throws IOException {
+		List<Result> results = new ArrayList<Result>();
+		boolean success = true;
+		for (int size : sizes) {
+			Result result = run(size);
+			results.add(result);
+			System.out.println(result);
+			success &= result.error == null && !result.exceedsLimits();
+		}
+		writeReport(results);
+		return success;
+	}
+
+	protected Result run(int size) throws IOException {
+		SyntheticTxnMgrConfig config = configFor(size);
+		File workDir = Files.createTempDirectory("docgen-scale").toFile();
+		try {
+			File configFile = config.compileClasses(true).write(workDir);
+			File outputDir = new File(workDir, "out");
+			outputDir.mkdir();
+
+			DocGenMojo mojo = new DocGenMojo();
+			mojo.setLog(new SystemStreamLog());
+			mojo.setSubflowMode(true);
+			mojo.setTxnmgrConfigPath(configFile.getAbsolutePath());
+			mojo.setBuildDirectory(outputDir.getAbsolutePath());
+			mojo.setAlias("scale " + size);
+			mojo.setGraphVizDotCmdPath(dotCmdPath);
+			mojo.setGraphVizConcurrency(Runtime.getRuntime()
+					.availableProcessors());
+			mojo.setRuntimeClasspathElements(Arrays.asList(new File(workDir,
+					SyntheticTxnMgrConfig.CLASSES_DIRNAME).getAbsolutePath()));
+
+			Result result = new Result(size, config);
+			System.gc();
+			resetHeapPeak();
+			long start = System.nanoTime();
+			try {
+				mojo.execute();
+			} catch (Exception e) {
+				result.error = e.toString();
+			} catch (OutOfMemoryError e) {
+				result.error = e.toString();
+			}
+			result.millis = (System.nanoTime() - start) / 1000000L;
+			result.peakHeapMb = getHeapPeak() / (1024 * 1024);
+			return result;
+		} finally {
+			SyntheticTxnMgrConfig.delete(workDir);
+		}
+	}
+
+	/**
+	 * @return a configuration of about <code>size</code> participants
+	 */
+	protected SyntheticTxnMgrConfig configFor(int size) {
+		int groupsPerTopLevelGroup = 0;
+		int levelGroups = 1;
+		for (int level = 0; level <= DEPTH; level++) {
+			groupsPerTopLevelGroup += levelGroups;
+			levelGroups *= FAN_OUT;
+		}
+		int participantsPerTopLevelGroup = groupsPerTopLevelGroup
+				* PARTICIPANTS_PER_GROUP;
+		int groups = Math.max(1, Math.round((float) size
+				/ participantsPerTopLevelGroup));
+		return new SyntheticTxnMgrConfig().groups(groups)
+				.participantsPerGroup(PARTICIPANTS_PER_GROUP).depth(DEPTH)
+				.fanOut(FAN_OUT);
+	}
+
+	protected void resetHeapPeak() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+			}
+		}
+	}
+
+	/**
+	 * @return sum of heap memory pools peak usage (in bytes)
+	 */
+	protected long getHeapPeak() {
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		return peak;
+	}
+
+	protected void writeReport(List<Result> results) throws IOException {
+		JsonWriter json = new JsonWriter(new OutputStreamWriter(
+				new FileOutputStream(reportFile), "UTF-8"));
+		try {
+			json.beginObject();
+			json.name("maxHeap").value(
+					Runtime.getRuntime().maxMemory() / (1024 * 1024));
+			json.name("maxSeconds").value(maxSeconds);
+			json.name("maxHeapMb").value(maxHeapMb);
+			json.name("runs").beginArray();
+			for (Result result : results) {
+				json.beginObject();
+				json.name("size").value(result.size);
+				json.name("participants").value(result.participants);
+				json.name("groups").value(result.groups);
+				json.name("time").value(result.millis);
+				json.name("peakHeapMb").value(result.peakHeapMb);
+				json.name("error").value(result.error);
+				json.name("exceedsLimits").value(result.exceedsLimits());
+				json.endObject();
+			}
+			json.endArray();
+			json.endObject();
+		} finally {
+			json.close();
+		}
+	}
+
+	class Result {
+		final int size;
+		final int participants;
+		final int groups;
+		long millis;
+		long peakHeapMb;
+		String error;
+
+		Result(int size, SyntheticTxnMgrConfig config) {
+			this.size = size;
+			this.participants = config.getParticipantCount();
+			this.groups = config.getGroupCount();
+		}
+
+		boolean exceedsLimits() {
+			return ((maxSeconds > 0) && (millis > maxSeconds * 1000))
+					|| ((maxHeapMb > 0) && (peakHeapMb > maxHeapMb));
+		}
+
+		@Override
+		public String toString() {
+			return String.format(
+					"%6d participants (%5d groups) : %s in %d ms, peak heap %d MB%s",
+					participants, groups, error == null ? "generated"
+							: "FAILED (" + error + ")", millis, peakHeapMb,
+					exceedsLimits() ? " - LIMITS EXCEEDED" : "");
+		}
+	}
+}
@@ -0,0 +1,148 @@
+/*
+ * txnmgrflow-docgen-maven-plugin
+ * (https://github.com/dgrandemange/txnmgrflow-docgen-maven-plugin)
+ *
+ * Ce fichier ne reprend pas de code de Shell for Java (adiGuba) : il est
+ * rgi, comme le reste du projet, par la licence Apache, version 2.0
+ * (http://www.apache.org/licenses/LICENSE-2.0).
+ */
+package com.developpez.adiguba.shell;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Cette classe permet d'utiliser un Appendable comme un OutputStream : les
+ * octets crits sont dcods selon le charset, puis ajouts  l'Appendable.<br>
+ * Les squences d'octets incompltes sont conserves jusqu' l'criture
+ * suivante, ou jusqu' la fermeture du flux.<br>
+ * La fermeture du flux ne ferme pas l'Appendable.
+ * 
+ * @see Appendable
+ * @see OutputStream
+ * 
+ * @author dgrandemange
+ */
+class AppendableOutputStream extends OutputStream {
+
+	/** Taille des buffers de dcodage. */
+	private static final int BUF_SIZE = 8192;
+	/** L'Appendable vers lequel les donnes dcodes seront crites. */
+	private final Appendable out;
+	/** Le dcodeur utilis pour la conversion. */
+	private final CharsetDecoder decoder;
+	/** Octets en attente de dcodage. */
+	private final ByteBuffer bytes = ByteBuffer.allocate(BUF_SIZE);
+	/** Caractres dcods. */
+	private final CharBuffer chars = CharBuffer.allocate(BUF_SIZE);
+	/** Le flux a-t-il t ferm. */
+	private boolean closed = false;
+
+	/**
+	 * Construit un AppendableOutputStream qui crit les donnes dans l'objet
+	 * Appendable en paramtre.
+	 * 
+	 * @param out
+	 *            L'Appendable destinataire des donnes.
+	 * @param charset
+	 *            Le charset  utiliser pour la conversion.
+	 */
+	AppendableOutputStream(Appendable out, Charset charset) {
+		if (out == null) {
+			throw new NullPointerException("null");
+		}
+		this.out = out;
+		this.decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	}
+
+	/**
+	 * Retourne l'Appendable destinataire des donnes.
+	 * 
+	 * @return L'Appendable.
+	 */
+	Appendable getAppendable() {
+		return this.out;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (this.closed) {
+			throw new IOException("Stream closed");
+		}
+		while (len > 0) {
+			int n = Math.min(len, this.bytes.remaining());
+			this.bytes.put(b, off, n);
+			off += n;
+			len -= n;
+			decode(false);
+		}
+	}
+
+	/**
+	 * Dcode les octets en attente vers l'Appendable.
+	 * 
+	 * @param endOfInput
+	 *            Indique qu'aucun octet ne suivra.
+	 * @throws IOException
+	 *             Erreur E/S
+	 */
+	private void decode(boolean endOfInput) throws IOException {
+		this.bytes.flip();
+		CoderResult result;
+		do {
+			result = this.decoder.decode(this.bytes, this.chars, endOfInput);
+			drain();
+		} while (result.isOverflow());
+		this.bytes.compact();
+	}
+
+	/**
+	 * Ecrit les caractres dcods dans l'Appendable.
+	 * 
+	 * @throws IOException
+	 *             Erreur E/S
+	 */
+	private void drain() throws IOException {
+		this.chars.flip();
+		if (this.chars.hasRemaining()) {
+			this.out.append(this.chars);
+		}
+		this.chars.clear();
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (this.out instanceof Flushable) {
+			((Flushable) this.out).flush();
+		}
+	}
+
+	/**
+	 * Dcode les derniers octets en attente, sans fermer l'Appendable.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (this.closed) {
+			return;
+		}
+		decode(true);
+		this.decoder.flush(this.chars);
+		drain();
+		flush();
+		this.closed = true;
+	}
+}
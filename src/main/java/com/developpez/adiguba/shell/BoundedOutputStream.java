@@ -0,0 +1,188 @@
+/*
+ * txnmgrflow-docgen-maven-plugin
+ * (https://github.com/dgrandemange/txnmgrflow-docgen-maven-plugin)
+ *
+ * Ce fichier ne reprend pas de code de Shell for Java (adiGuba) : il est
+ * rgi, comme le reste du projet, par la licence Apache, version 2.0
+ * (http://www.apache.org/licenses/LICENSE-2.0).
+ */
+package com.developpez.adiguba.shell;
+
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Flux de capture de taille borne, pouvant tre utilis comme flux de
+ * sortie d'un process via <code>output()</code>/<code>error()</code>.<br>
+ * Seuls les <code>headSize</code> premiers octets et les
+ * <code>tailSize</code> derniers octets crits sont conservs (ces derniers
+ * dans un buffer circulaire), les octets intermdiaires tant simplement
+ * compts : la mmoire utilise reste donc constante quel que soit le volume
+ * produit par le process.<br>
+ * <br>
+ * Par exemple :<br>
+ * 
+ * <pre><code>
+ * BoundedOutputStream err = new BoundedOutputStream(4096, 4096);
+ * int result = pc.error(err).consume();
+ * if (err.getDroppedCount() &gt; 0) {
+ *   ...
+ * }
+ * System.err.println(err.toString());
+ * </code></pre>
+ * 
+ * @see ProcessConsumer#output(OutputStream)
+ * @see ProcessConsumer#error(OutputStream)
+ * @author dgrandemange
+ */
+public class BoundedOutputStream extends OutputStream {
+
+	/** Premiers octets crits. */
+	private final byte[] head;
+	/** Nombre d'octets prsents dans <code>head</code>. */
+	private int headCount = 0;
+	/** Buffer circulaire contenant les derniers octets crits. */
+	private final byte[] tail;
+	/** Position d'criture dans le buffer circulaire. */
+	private int tailPos = 0;
+	/** Nombre d'octets prsents dans le buffer circulaire. */
+	private int tailCount = 0;
+	/** Nombre total d'octets crits. */
+	private long count = 0;
+
+	/**
+	 * Construit un BoundedOutputStream conservant au plus
+	 * <code>headSize + tailSize</code> octets.
+	 * 
+	 * @param headSize
+	 *            Nombre de premiers octets conservs.
+	 * @param tailSize
+	 *            Nombre de derniers octets conservs.
+	 */
+	public BoundedOutputStream(int headSize, int tailSize) {
+		if (headSize < 0 || tailSize < 0) {
+			throw new IllegalArgumentException("size < 0");
+		}
+		this.head = new byte[headSize];
+		this.tail = new byte[tailSize];
+	}
+
+	@Override
+	public synchronized void write(int b) {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public synchronized void write(byte[] b, int off, int len) {
+		this.count += len;
+
+		int n = Math.min(len, this.head.length - this.headCount);
+		if (n > 0) {
+			System.arraycopy(b, off, this.head, this.headCount, n);
+			this.headCount += n;
+			off += n;
+			len -= n;
+		}
+
+		if (len <= 0 || this.tail.length == 0) {
+			return;
+		}
+		if (len >= this.tail.length) {
+			// Seuls les derniers octets sont conservs
+			off += len - this.tail.length;
+			len = this.tail.length;
+		}
+		while (len > 0) {
+			n = Math.min(len, this.tail.length - this.tailPos);
+			System.arraycopy(b, off, this.tail, this.tailPos, n);
+			this.tailPos = (this.tailPos + n) % this.tail.length;
+			off += n;
+			len -= n;
+			this.tailCount = Math.min(this.tailCount + n, this.tail.length);
+		}
+	}
+
+	/**
+	 * Retourne le nombre total d'octets crits dans ce flux.
+	 * 
+	 * @return Le nombre d'octets crits.
+	 */
+	public synchronized long size() {
+		return this.count;
+	}
+
+	/**
+	 * Retourne le nombre d'octets crits mais non conservs.
+	 * 
+	 * @return Le nombre d'octets perdus.
+	 */
+	public synchronized long getDroppedCount() {
+		return this.count - this.headCount - this.tailCount;
+	}
+
+	/**
+	 * Retourne les premiers octets crits.
+	 * 
+	 * @return Une copie des premiers octets.
+	 */
+	public synchronized byte[] getHead() {
+		byte[] result = new byte[this.headCount];
+		System.arraycopy(this.head, 0, result, 0, this.headCount);
+		return result;
+	}
+
+	/**
+	 * Retourne les derniers octets crits (hors premiers octets).
+	 * 
+	 * @return Une copie des derniers octets.
+	 */
+	public synchronized byte[] getTail() {
+		byte[] result = new byte[this.tailCount];
+		int start = (this.tailPos - this.tailCount + this.tail.length)
+				% Math.max(1, this.tail.length);
+		int n = Math.min(this.tailCount, this.tail.length - start);
+		System.arraycopy(this.tail, start, result, 0, n);
+		System.arraycopy(this.tail, 0, result, n, this.tailCount - n);
+		return result;
+	}
+
+	/**
+	 * Vide le flux.
+	 */
+	public synchronized void reset() {
+		this.headCount = 0;
+		this.tailPos = 0;
+		this.tailCount = 0;
+		this.count = 0;
+	}
+
+	/**
+	 * Retourne le contenu conserv, converti selon le charset en paramtre.
+	 * Lorsque des octets ont t perdus, leur nombre est indiqu entre les
+	 * premiers et les derniers octets.
+	 * 
+	 * @param charset
+	 *            Le charset  utiliser pour la conversion.
+	 * @return Le contenu conserv.
+	 */
+	public synchronized String toString(Charset charset) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(new String(getHead(), charset));
+		long dropped = getDroppedCount();
+		if (dropped > 0) {
+			sb.append(String.format("%n[... %d bytes dropped ...]%n", dropped));
+		}
+		sb.append(new String(getTail(), charset));
+		return sb.toString();
+	}
+
+	/**
+	 * Retourne le contenu conserv, converti selon le charset par dfaut.
+	 * 
+	 * @see BoundedOutputStream#toString(Charset)
+	 */
+	@Override
+	public String toString() {
+		return toString(Charset.defaultCharset());
+	}
+}
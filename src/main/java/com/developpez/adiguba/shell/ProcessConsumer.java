@@ -40,6 +40,10 @@
 package com.developpez.adiguba.shell;
 
 import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.Flushable;
 import java.io.IOException;
 import java.io.InputStream;
@@ -48,13 +52,27 @@ import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintStream;
+import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.Charset;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * ProcessConsumer permet de traiter tous les flux d'un process.<br>
@@ -80,35 +98,120 @@ import java.util.concurrent.ThreadFactory;
 public class ProcessConsumer {
 
 	/**
-	 * L'instance statique de l'executor qui sera charg de lancer les tches de
-	 * fond.
+	 * L'instance statique de l'executor par dfaut, qui sera charg de lancer
+	 * les tches de fond. Elle est partage par tous les ProcessConsumer, y
+	 * compris lorsque ceux-ci sont utiliss depuis plusieurs threads
+	 * simultanment. Elle n'est jamais arrte : ses threads sont librs aprs
+	 * une minute d'inactivit.
 	 */
-	private static final ExecutorService EXECUTOR = Executors
-			.newCachedThreadPool(new ThreadFactory() {
-				private final ThreadGroup threadGroup = new ThreadGroup(
-						"ProcessConsumerThreadGroup");
-				private int count = 0;
-
-				public Thread newThread(Runnable runnable) {
-					Thread t = new Thread(this.threadGroup, runnable,
-							"ProcessConsumerThread-" + (++count));
-					t.setPriority(Thread.NORM_PRIORITY);
-					t.setDaemon(true);
-					return t;
-				}
-			});
+	private static final ExecutorService DEFAULT_EXECUTOR = newExecutor();
 
-	/** Taille du buffer de lecture lors de la copie des flux. */
+	/**
+	 * L'instance statique du watchdog charg de dtruire les process dont le
+	 * dlai d'excution a expir. Comme l'executor par dfaut, elle est partage
+	 * et n'est jamais arrte : son thread est libr aprs une minute
+	 * d'inactivit.
+	 */
+	private static final ScheduledExecutorService DEFAULT_WATCHDOG = newWatchdog();
+
+	/**
+	 * Cre un executor pouvant tre fourni via
+	 * {@link ProcessConsumer#executor(ExecutorService)}. Ses threads sont des
+	 * threads dmons, et sont librs aprs une minute d'inactivit.
+	 * L'appelant est responsable de son arrt.
+	 * 
+	 * @return L'executor.
+	 */
+	public static ExecutorService newExecutor() {
+		return Executors.newCachedThreadPool(new ThreadFactory() {
+			private final ThreadGroup threadGroup = new ThreadGroup(
+					"ProcessConsumerThreadGroup");
+			private final AtomicInteger count = new AtomicInteger();
+
+			public Thread newThread(Runnable runnable) {
+				Thread t = new Thread(this.threadGroup, runnable,
+						"ProcessConsumerThread-" + count.incrementAndGet());
+				t.setPriority(Thread.NORM_PRIORITY);
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * Cre un watchdog pouvant tre fourni via
+	 * {@link ProcessConsumer#watchdog(ScheduledExecutorService)}. Son thread
+	 * est un thread dmon, libr aprs une minute d'inactivit. Les tches
+	 * annules sont retires immdiatement de sa file. L'appelant est
+	 * responsable de son arrt.
+	 * 
+	 * @return Le watchdog.
+	 */
+	public static ScheduledExecutorService newWatchdog() {
+		ScheduledThreadPoolExecutor watchdog = new ScheduledThreadPoolExecutor(
+				1, new ThreadFactory() {
+					public Thread newThread(Runnable runnable) {
+						Thread t = new Thread(runnable, "ProcessConsumerWatchdog");
+						t.setDaemon(true);
+						return t;
+					}
+				});
+		watchdog.setKeepAliveTime(1, TimeUnit.MINUTES);
+		watchdog.allowCoreThreadTimeOut(true);
+		watchdog.setRemoveOnCancelPolicy(true);
+		return watchdog;
+	}
+
+	/** Priode d'chantillonnage de la consommation des process (en ms). */
+	private static final long USAGE_SAMPLING_PERIOD = 20;
+
+	/** Taille par dfaut du buffer de lecture lors de la copie des flux. */
 	private static final int BUF_SIZE = 8192;
 	/** Charset utilis pour la convertion des flux. */
 	private final Charset charset;
 	/** Flux d'entre  rediriger vers le process */
 	private Readable stdin = null;
+	/** Fichier  copier tel quel vers l'entre du process */
+	private File stdinFile = null;
+	/** Buffer  copier tel quel vers l'entre du process */
+	private ByteBuffer stdinBuffer = null;
 	/** Flux de sortie standard  rediriger depuis le process */
 	private Appendable stdout = System.out;
 	/** Flux de sortie d'erreur  rediriger depuis le process */
 	private Appendable stderr = System.err;
 
+	/**
+	 * Pump charg de vider les flux de sortie du process (si <b>null</b>, des
+	 * tches de fond ddies sont utilises)
+	 */
+	private ProcessPump pump = null;
+
+	/**
+	 * Executor charg de lancer les tches de fond (si <b>null</b>, l'executor
+	 * par dfaut est utilis)
+	 */
+	private ExecutorService executor = null;
+
+	/**
+	 * Watchdog charg du dlai d'excution et du relev de la consommation (si
+	 * <b>null</b>, le watchdog par dfaut est utilis)
+	 */
+	private ScheduledExecutorService scheduler = null;
+
+	/** Taille du buffer de lecture lors de la copie des flux. */
+	private int bufferSize = BUF_SIZE;
+
+	/** Relev de la consommation du process. */
+	private boolean accounting = false;
+
+	/** Consommation du process, si releve. */
+	private volatile ProcessUsage usage = null;
+
+	/** Dlai d'excution maximal du process (en ms), 0 si aucun. */
+	private long timeout = 0;
+	/** Tches de fond en cours, annules  l'expiration du dlai. */
+	private final List<Future<?>> tasks = new CopyOnWriteArrayList<Future<?>>();
+
 	/** La copie des flux a-t-elle dj eu lieu. */
 	private boolean started = false;
 	/** Instance du process (selon le type de constructeur qui est utilis) */
@@ -228,13 +331,24 @@ public class ProcessConsumer {
 	 *             Lorsque le flux d'entre a dj t dfini prcdemment.
 	 */
 	public ProcessConsumer input(Readable in) throws IllegalStateException {
-		if (this.stdin != null) {
-			throw new IllegalStateException("INPUT already set.");
-		}
+		checkInputNotSet();
 		this.stdin = in;
 		return this;
 	}
 
+	/**
+	 * Vrifie qu'aucun flux d'entre n'a t dfini.
+	 * 
+	 * @throws IllegalStateException
+	 *             Lorsque le flux d'entre a dj t dfini prcdemment.
+	 */
+	private void checkInputNotSet() throws IllegalStateException {
+		if ((this.stdin != null) || (this.stdinFile != null)
+				|| (this.stdinBuffer != null)) {
+			throw new IllegalStateException("INPUT already set.");
+		}
+	}
+
 	/**
 	 * Dfinit un InputStream comme flux d'entre pour le process.
 	 * 
@@ -267,6 +381,42 @@ public class ProcessConsumer {
 		return input(readable(in));
 	}
 
+	/**
+	 * Dfinit le contenu d'un fichier comme flux d'entre pour le process. Le
+	 * contenu est copi octet par octet, sans conversion, par blocs de la
+	 * taille du buffer de copie.
+	 * 
+	 * @param in
+	 *            Le fichier  utiliser comme flux d'entre du process.
+	 * @return <b>this</b>
+	 * @throws IllegalStateException
+	 *             Lorsque le flux d'entre a dj t dfini prcdemment.
+	 * @see ProcessConsumer#input(Readable)
+	 */
+	public ProcessConsumer input(File in) throws IllegalStateException {
+		checkInputNotSet();
+		this.stdinFile = in;
+		return this;
+	}
+
+	/**
+	 * Dfinit le contenu d'un ByteBuffer (de sa position  sa limite) comme
+	 * flux d'entre pour le process. Le contenu est copi octet par octet, sans
+	 * conversion ; la position du buffer n'est pas modifie.
+	 * 
+	 * @param in
+	 *            Le buffer  utiliser comme flux d'entre du process.
+	 * @return <b>this</b>
+	 * @throws IllegalStateException
+	 *             Lorsque le flux d'entre a dj t dfini prcdemment.
+	 * @see ProcessConsumer#input(Readable)
+	 */
+	public ProcessConsumer input(ByteBuffer in) throws IllegalStateException {
+		checkInputNotSet();
+		this.stdinBuffer = in;
+		return this;
+	}
+
 	/**
 	 * Supprime le flux d'entre pour le process (pas de flux d'entre).
 	 * 
@@ -295,6 +445,22 @@ public class ProcessConsumer {
 		return new OutputStreamWriter(out, this.charset);
 	}
 
+	/**
+	 * Transforme un OutputStream en un objet Appendable, dont les donnes
+	 * issues du process seront copies octet par octet, sans conversion.
+	 * 
+	 * @param out
+	 *            OutputStream (peut tre null)
+	 * @return un BinaryAppendable, ou <b>null</b> si <code>out</code> est
+	 *         <b>null</b>.
+	 */
+	private Appendable binaryAppendable(OutputStream out) {
+		if (out == null) {
+			return null;
+		}
+		return new BinaryAppendable(out, this.charset);
+	}
+
 	/**
 	 * Dfinit un objet Appendable comme flux de sortie standard pour le
 	 * process. Une seule des mthodes <code>output()</code> peut tre
@@ -318,7 +484,8 @@ public class ProcessConsumer {
 
 	/**
 	 * Dfinit un objet OutputStream comme flux de sortie standard pour le
-	 * process.
+	 * process. Les donnes sont copies telles quelles (sans dcodage ni
+	 * encodage), et le flux n'est vid qu'en fin de copie.
 	 * 
 	 * @param out
 	 *            Le flux de sortie standard du process.
@@ -330,7 +497,7 @@ public class ProcessConsumer {
 	 */
 	public ProcessConsumer output(OutputStream out)
 			throws IllegalStateException {
-		return output(appendable(out));
+		return output(binaryAppendable(out));
 	}
 
 	/**
@@ -385,7 +552,8 @@ public class ProcessConsumer {
 
 	/**
 	 * Dfinit un objet OutputStream comme flux de sortie d'erreur pour le
-	 * process.
+	 * process. Les donnes sont copies telles quelles (sans dcodage ni
+	 * encodage), et le flux n'est vid qu'en fin de copie.
 	 * 
 	 * @param err
 	 *            Le flux de sortie d'erreur du process.
@@ -396,7 +564,7 @@ public class ProcessConsumer {
 	 * @see ProcessConsumer#error(Appendable)
 	 */
 	public ProcessConsumer error(OutputStream err) throws IllegalStateException {
-		return error(appendable(err));
+		return error(binaryAppendable(err));
 	}
 
 	/**
@@ -452,6 +620,141 @@ public class ProcessConsumer {
 		return this;
 	}
 
+	/**
+	 * Dfinit le ProcessPump charg de vider les flux de sortie standard et
+	 * d'erreur du process,  la place de tches de fond ddies. Cela permet
+	 * de limiter le nombre de threads utiliss lorsque de nombreux process
+	 * sont lancs simultanment.<br>
+	 * Par dfaut, aucun ProcessPump n'est utilis.
+	 * 
+	 * @param pump
+	 *            Le ProcessPump  utiliser.
+	 * @return <b>this</b>
+	 * @see ProcessPump
+	 */
+	public ProcessConsumer pump(ProcessPump pump) {
+		this.pump = pump;
+		return this;
+	}
+
+	/**
+	 * Dfinit l'executor charg de lancer les tches de fond de ce
+	 * ProcessConsumer (copie des flux, <code>consumeInBackground()</code>,
+	 * ...). L'appelant reste responsable de son arrt.<br>
+	 * Par dfaut, l'executor partag par tous les ProcessConsumer est utilis.
+	 * 
+	 * @param executor
+	 *            L'executor  utiliser.
+	 * @return <b>this</b>
+	 * @see ProcessConsumer#newExecutor()
+	 */
+	public ProcessConsumer executor(ExecutorService executor) {
+		this.executor = executor;
+		return this;
+	}
+
+	/**
+	 * Dfinit le watchdog charg de dtruire le process  l'expiration de son
+	 * dlai d'excution, et d'chantillonner sa consommation. L'appelant reste
+	 * responsable de son arrt.<br>
+	 * Par dfaut, le watchdog partag par tous les ProcessConsumer est utilis.
+	 * 
+	 * @param watchdog
+	 *            Le watchdog  utiliser.
+	 * @return <b>this</b>
+	 * @see ProcessConsumer#timeout(long, TimeUnit)
+	 * @see ProcessConsumer#accounting(boolean)
+	 * @see ProcessConsumer#newWatchdog()
+	 */
+	public ProcessConsumer watchdog(ScheduledExecutorService watchdog) {
+		this.scheduler = watchdog;
+		return this;
+	}
+
+	/**
+	 * Retourne le watchdog de cette instance, ou le watchdog par dfaut si
+	 * aucun n'a t dfini.
+	 * 
+	 * @return Le watchdog.
+	 */
+	private ScheduledExecutorService getWatchdog() {
+		if (this.scheduler != null) {
+			return this.scheduler;
+		}
+		return DEFAULT_WATCHDOG;
+	}
+
+	/**
+	 * Dfinit le dlai d'excution maximal du process. A l'expiration de ce
+	 * dlai, le process est dtruit, les tches de copie des flux sont
+	 * annules et la mthode <code>consume()</code> lve une
+	 * ProcessTimeoutException.<br>
+	 * Seul le process lanc est dtruit, et non ses ventuels fils : une
+	 * commande lance au travers du shell systme doit donc plutt tre lance
+	 * directement (via {@link Shell#exec(String...)} ou un ProcessBuilder).<br>
+	 * Par dfaut, aucun dlai n'est appliqu.
+	 * 
+	 * @param duration
+	 *            Le dlai (0 pour aucun dlai).
+	 * @param unit
+	 *            L'unit du dlai.
+	 * @return <b>this</b>
+	 * @see ProcessTimeoutException
+	 */
+	public ProcessConsumer timeout(long duration, TimeUnit unit) {
+		this.timeout = unit.toMillis(duration);
+		return this;
+	}
+
+	/**
+	 * Dfinit la taille du buffer utilis lors de la copie des flux du
+	 * process (hors ProcessPump).<br>
+	 * Par dfaut, un buffer de 8192 octets (ou caractres) est utilis.
+	 * 
+	 * @param size
+	 *            La taille du buffer.
+	 * @return <b>this</b>
+	 * @throws IllegalArgumentException
+	 *             Si la taille n'est pas strictement positive.
+	 */
+	public ProcessConsumer bufferSize(int size) throws IllegalArgumentException {
+		if (size <= 0) {
+			throw new IllegalArgumentException("Invalid buffer size : " + size);
+		}
+		this.bufferSize = size;
+		return this;
+	}
+
+	/**
+	 * Active le relev de la consommation de ressources du process (temps
+	 * coul, temps CPU, pic de mmoire), disponible aprs son excution via
+	 * {@link ProcessConsumer#getUsage()}.<br>
+	 * Ce relev n'est possible que sous Linux, et est simplement ignor sur
+	 * les autres systmes.<br>
+	 * Par dfaut, aucun relev n'est effectu.
+	 * 
+	 * @param enabled
+	 *            <b>true</b> pour activer le relev.
+	 * @return <b>this</b>
+	 * @see ProcessUsage
+	 */
+	public ProcessConsumer accounting(boolean enabled) {
+		this.accounting = enabled;
+		return this;
+	}
+
+	/**
+	 * Retourne la consommation de ressources du process, si son relev a t
+	 * activ.
+	 * 
+	 * @return La consommation du process, ou <b>null</b> si elle n'a pas t
+	 *         releve.
+	 * @see ProcessConsumer#accounting(boolean)
+	 */
+	public ProcessUsage getUsage() {
+		return this.usage;
+	}
+
 	/**
 	 * Retourne le process  utiliser selon le constructeur utilis. Soit cette
 	 * mthode retourne le process pass au constructeur, soit elle dmarre un
@@ -461,16 +764,21 @@ public class ProcessConsumer {
 	 * @throws IOException
 	 *             Si le process a dj t "dmarr"
 	 */
-	private Process getProcess() throws IOException {
+	private synchronized Process getProcess() throws IOException {
 		if (this.started) {
 			throw new IOException("Process already started");
 		}
+		this.started = true;
 		if (this.builder == null) {
 			return this.userProcess;
 		}
-		return this.builder.start();
+		Object spawnEvent = ProcessEvents.beginSpawn(this.builder);
+		Process process = this.builder.start();
+		ProcessEvents.endSpawn(spawnEvent, process);
+		return process;
 	}
 
+
 	/**
 	 * Consume tous les flux du process en associant les diffrents flux. Cette
 	 * mthode est bloquante tant que le process n'est pas termin.
@@ -483,37 +791,121 @@ public class ProcessConsumer {
 	public int consume() throws IOException {
 		Future<?> inputTask = null;
 		Future<?> errorTask = null;
-		Process process = getProcess();
+		final Process process = getProcess();
+		final long start = System.currentTimeMillis();
+		final AtomicBoolean timedOut = new AtomicBoolean(false);
+		ScheduledFuture<?> watchdogTask = null;
+		ScheduledFuture<?> samplingTask = null;
+		Object executionEvent = ProcessEvents.beginExecution(this.builder,
+				process);
+		int exitValue = -1;
 		try {
+			// Planification dans le try : le process est dtruit si elle choue
+			if (this.accounting && ProcessUsage.isSupported()) {
+				long pid = ProcessUsage.pidOf(process);
+				if (pid > 0) {
+					final ProcessUsage processUsage = new ProcessUsage(pid);
+					this.usage = processUsage;
+					samplingTask = getWatchdog().scheduleWithFixedDelay(
+							new Runnable() {
+								public void run() {
+									processUsage.sample();
+								}
+							}, 0, USAGE_SAMPLING_PERIOD,
+							TimeUnit.MILLISECONDS);
+				}
+			}
+			if (this.timeout > 0) {
+				watchdogTask = getWatchdog().schedule(new Runnable() {
+					public void run() {
+						try {
+							process.exitValue();
+							return;
+						} catch (IllegalThreadStateException e) {
+							// Le process est toujours en cours
+						}
+						timedOut.set(true);
+						process.destroy();
+						for (Future<?> task : ProcessConsumer.this.tasks) {
+							task.cancel(true);
+						}
+					}
+				}, this.timeout, TimeUnit.MILLISECONDS);
+			}
+
 			OutputStream pIn = process.getOutputStream();
-			if (this.stdin == null) {
+			if ((this.stdinFile != null) || (this.stdinBuffer != null)) {
+				inputTask = transferInBackground(this.stdinFile,
+						this.stdinBuffer, pIn);
+				this.tasks.add(inputTask);
+			} else if (this.stdin == null) {
 				pIn.close();
 			} else {
 				inputTask = dumpInBackground(this.stdin, appendable(pIn));
+				this.tasks.add(inputTask);
 			}
 
 			InputStream pErr = process.getErrorStream();
-			if (this.stderr == null) {
-				pErr.close();
-			} else {
-				errorTask = dumpInBackground(readable(pErr), this.stderr);
-			}
-
 			InputStream pOut = process.getInputStream();
-			if (this.stdout == null) {
-				pOut.close();
+			if (this.pump != null) {
+				pump(process, pErr, pOut);
 			} else {
-				dump(readable(pOut), this.stdout);
+				if (this.stderr == null) {
+					pErr.close();
+				} else if (this.stderr instanceof BinaryAppendable) {
+					errorTask = dumpInBackground(pErr,
+							(BinaryAppendable) this.stderr);
+				} else {
+					errorTask = dumpInBackground(readable(pErr), this.stderr);
+				}
+				if (errorTask != null) {
+					this.tasks.add(errorTask);
+				}
+
+				if (this.stdout == null) {
+					pOut.close();
+				} else if (this.stdout instanceof BinaryAppendable) {
+					dump(pOut, (BinaryAppendable) this.stdout);
+				} else {
+					dump(readable(pOut), this.stdout);
+				}
 			}
 
+			int result;
 			try {
-				return process.waitFor();
+				result = process.waitFor();
+				exitValue = result;
+				if (this.usage != null) {
+					this.usage.stop();
+				}
+				// Le process tant termin, son flux d'erreur sera bientt
+				// entirement copi
+				await(errorTask);
 			} catch (InterruptedException e) {
 				IOException ioe = new InterruptedIOException();
 				ioe.initCause(e);
 				throw ioe;
 			}
+			if (timedOut.get()) {
+				throw new ProcessTimeoutException(this.timeout,
+						System.currentTimeMillis() - start);
+			}
+			return result;
+		} catch (IOException e) {
+			if (timedOut.get() && !(e instanceof ProcessTimeoutException)) {
+				// Flux interrompus par la destruction du process
+				throw new ProcessTimeoutException(this.timeout,
+						System.currentTimeMillis() - start);
+			}
+			throw e;
 		} finally {
+			if (watchdogTask != null) {
+				watchdogTask.cancel(false);
+			}
+			if (samplingTask != null) {
+				samplingTask.cancel(false);
+				this.usage.stop();
+			}
 			process.destroy();
 			if (inputTask != null) {
 				inputTask.cancel(true);
@@ -521,6 +913,130 @@ public class ProcessConsumer {
 			if (errorTask != null) {
 				errorTask.cancel(true);
 			}
+			this.tasks.clear();
+			// Fermeture des flux, sans attendre le ramasse-miettes
+			tryToClose(this.stdin);
+			tryToClose(this.stdout);
+			tryToClose(this.stderr);
+			ProcessEvents.endExecution(executionEvent, exitValue,
+					timedOut.get());
+		}
+	}
+
+	/**
+	 * Vide les flux de sortie standard et d'erreur du process via le
+	 * ProcessPump. Cette mthode est bloquante tant que les flux n'ont pas t
+	 * entirement lus.
+	 * 
+	 * @param process
+	 *            Le process
+	 * @param pErr
+	 *            Flux d'erreur du process
+	 * @param pOut
+	 *            Flux de sortie standard du process
+	 * @throws IOException
+	 *             Erreur d'E/S
+	 */
+	private void pump(Process process, InputStream pErr, InputStream pOut)
+			throws IOException {
+		OutputStream errSink = null;
+		OutputStream outSink = null;
+		Future<Void> errorTask = null;
+		Future<Void> outputTask = null;
+		try {
+			if (this.stderr == null) {
+				pErr.close();
+			} else {
+				errSink = sink(this.stderr);
+				errorTask = this.pump.register(process, pErr, errSink);
+				this.tasks.add(errorTask);
+			}
+
+			if (this.stdout == null) {
+				pOut.close();
+			} else {
+				outSink = sink(this.stdout);
+				outputTask = this.pump.register(process, pOut, outSink);
+				this.tasks.add(outputTask);
+			}
+
+			await(outputTask);
+			await(errorTask);
+		} finally {
+			if (outputTask != null) {
+				outputTask.cancel(false);
+			}
+			if (errorTask != null) {
+				errorTask.cancel(false);
+			}
+			if (outSink != null) {
+				outSink.close();
+				tryToClose(pOut);
+				tryToClose(this.stdout);
+			}
+			if (errSink != null) {
+				errSink.close();
+				tryToClose(pErr);
+				tryToClose(this.stderr);
+			}
+		}
+	}
+
+	/**
+	 * Retourne le flux dans lequel le ProcessPump doit crire les donnes 
+	 * destination d'un Appendable. La fermeture de ce flux ne ferme pas
+	 * l'Appendable.
+	 * 
+	 * @param out
+	 *            L'Appendable destinataire
+	 * @return Le flux
+	 */
+	private OutputStream sink(Appendable out) {
+		if (out instanceof BinaryAppendable) {
+			return new FilterOutputStream(((BinaryAppendable) out)
+					.getOutputStream()) {
+				@Override
+				public void write(byte[] b, int off, int len)
+						throws IOException {
+					this.out.write(b, off, len);
+				}
+
+				@Override
+				public void close() throws IOException {
+					flush();
+				}
+			};
+		}
+		return new AppendableOutputStream(out, this.charset);
+	}
+
+	/**
+	 * Attend la fin d'une tche.
+	 * 
+	 * @param task
+	 *            La tche (peut tre null)
+	 * @throws IOException
+	 *             Erreur d'E/S de la tche, ou interruption de l'attente
+	 */
+	private static void await(Future<?> task) throws IOException {
+		if (task == null) {
+			return;
+		}
+		try {
+			task.get();
+		} catch (InterruptedException e) {
+			IOException ioe = new InterruptedIOException();
+			ioe.initCause(e);
+			throw ioe;
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			IOException ioe = new IOException(e.getCause().getMessage());
+			ioe.initCause(e.getCause());
+			throw ioe;
+		} catch (CancellationException e) {
+			throw new InterruptedIOException("Cancelled");
 		}
 	}
 
@@ -551,7 +1067,7 @@ public class ProcessConsumer {
 	 * @see Future
 	 */
 	public Future<Integer> consumeInBackground() {
-		return ProcessConsumer.inBackground(new Callable<Integer>() {
+		return submit(new Callable<Integer>() {
 			public Integer call() throws Exception {
 				return ProcessConsumer.this.consume();
 			}
@@ -568,7 +1084,7 @@ public class ProcessConsumer {
 	 * @see Future
 	 */
 	public Future<String> consumeAsStringInBackground() {
-		return ProcessConsumer.inBackground(new Callable<String>() {
+		return submit(new Callable<String>() {
 			public String call() throws Exception {
 				return ProcessConsumer.this.consumeAsString();
 			}
@@ -599,16 +1115,6 @@ public class ProcessConsumer {
 		}
 	}
 
-	/**
-	 * Garde fou qui force la fermeture des flux au cas o...
-	 */
-	@Override
-	protected void finalize() {
-		tryToClose(this.stdin);
-		tryToClose(this.stdout);
-		tryToClose(this.stderr);
-	}
-
 	/**
 	 * Copie des flux de <code>in</code> vers <code>out</code>.
 	 * 
@@ -627,7 +1133,7 @@ public class ProcessConsumer {
 					flushable = ((Flushable) out);
 				}
 				Thread current = Thread.currentThread();
-				CharBuffer cb = CharBuffer.allocate(BUF_SIZE);
+				CharBuffer cb = CharBuffer.allocate(this.bufferSize);
 				int len;
 
 				cb.clear();
@@ -648,6 +1154,137 @@ public class ProcessConsumer {
 		}
 	}
 
+	/**
+	 * Copie octet par octet des flux de <code>in</code> vers <code>out</code>,
+	 * sans conversion. Lorsque la destination est un fichier, la copie est
+	 * dlgue au FileChannel. Le flux de destination n'est vid qu'en fin de
+	 * copie.
+	 * 
+	 * @param in
+	 *            Flux depuis lequel les donnes seront lues
+	 * @param out
+	 *            Flux vers lequel les donnes seront crites
+	 * @throws IOException
+	 *             Erreur E/S
+	 */
+	private final void dump(InputStream in, BinaryAppendable out)
+			throws IOException {
+		try {
+			try {
+				Thread current = Thread.currentThread();
+				OutputStream os = out.getOutputStream();
+				if (os instanceof FileOutputStream) {
+					FileChannel fc = ((FileOutputStream) os).getChannel();
+					ReadableByteChannel src = Channels.newChannel(in);
+					long position = fc.position();
+					long len;
+					while (!current.isInterrupted()
+							&& (len = fc.transferFrom(src, position,
+									this.bufferSize)) > 0) {
+						position += len;
+					}
+					fc.position(position);
+				} else {
+					byte[] buffer = new byte[this.bufferSize];
+					int len;
+					while (!current.isInterrupted()
+							&& (len = in.read(buffer)) > 0) {
+						os.write(buffer, 0, len);
+					}
+				}
+				out.flush();
+			} finally {
+				tryToClose(in);
+			}
+		} finally {
+			tryToClose(out);
+		}
+	}
+
+	/**
+	 * Copie octet par octet des flux de <code>in</code> vers <code>out</code>,
+	 * en tche de fond.
+	 * 
+	 * @param in
+	 *            Flux depuis lequel les donnes seront lues
+	 * @param out
+	 *            Flux vers lequel les donnes seront crites
+	 */
+	private final Future<Void> dumpInBackground(final InputStream in,
+			final BinaryAppendable out) {
+		return submit(new Callable<Void>() {
+			public Void call() throws Exception {
+				dump(in, out);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Copie octet par octet du contenu d'un fichier ou d'un buffer vers
+	 * <code>out</code>, sans conversion. Le flux de destination est ferm en
+	 * fin de copie.
+	 * 
+	 * @param file
+	 *            Fichier  copier, ou <b>null</b>
+	 * @param buffer
+	 *            Buffer  copier (lorsque <code>file</code> est <b>null</b>)
+	 * @param out
+	 *            Flux vers lequel les donnes seront crites
+	 * @throws IOException
+	 *             Erreur E/S
+	 */
+	private final void transfer(File file, ByteBuffer buffer, OutputStream out)
+			throws IOException {
+		try {
+			Thread current = Thread.currentThread();
+			byte[] bytes = new byte[this.bufferSize];
+			if (file != null) {
+				InputStream in = new FileInputStream(file);
+				try {
+					int len;
+					while (!current.isInterrupted()
+							&& ((len = in.read(bytes)) > 0)) {
+						out.write(bytes, 0, len);
+					}
+				} finally {
+					in.close();
+				}
+			} else {
+				ByteBuffer src = buffer.duplicate();
+				while (!current.isInterrupted() && src.hasRemaining()) {
+					int len = Math.min(bytes.length, src.remaining());
+					src.get(bytes, 0, len);
+					out.write(bytes, 0, len);
+				}
+			}
+			out.flush();
+		} finally {
+			tryToClose(out);
+		}
+	}
+
+	/**
+	 * Copie octet par octet du contenu d'un fichier ou d'un buffer vers
+	 * <code>out</code>, en tche de fond.
+	 * 
+	 * @param file
+	 *            Fichier  copier, ou <b>null</b>
+	 * @param buffer
+	 *            Buffer  copier (lorsque <code>file</code> est <b>null</b>)
+	 * @param out
+	 *            Flux vers lequel les donnes seront crites
+	 */
+	private final Future<Void> transferInBackground(final File file,
+			final ByteBuffer buffer, final OutputStream out) {
+		return submit(new Callable<Void>() {
+			public Void call() throws Exception {
+				transfer(file, buffer, out);
+				return null;
+			}
+		});
+	}
+
 	/**
 	 * Copie des flux de <code>in</code> vers <code>out</code>, en tche de
 	 * fond.
@@ -659,7 +1296,7 @@ public class ProcessConsumer {
 	 */
 	public final Future<Void> dumpInBackground(final Readable in,
 			final Appendable out) {
-		return ProcessConsumer.inBackground(new Callable<Void>() {
+		return submit(new Callable<Void>() {
 			public Void call() throws Exception {
 				dump(in, out);
 				return null;
@@ -678,6 +1315,74 @@ public class ProcessConsumer {
 	 * @see Future
 	 */
 	protected static <T> Future<T> inBackground(Callable<T> task) {
-		return ProcessConsumer.EXECUTOR.submit(task);
+		return DEFAULT_EXECUTOR.submit(task);
+	}
+
+	/**
+	 * Excute une tche dans un thread spare, en utilisant l'executor de
+	 * cette instance, ou l'executor par dfaut si aucun n'a t dfini.
+	 * 
+	 * @param <T>
+	 *            Le type du rsultat de la tche.
+	 * @param task
+	 *            La tche a excuter.
+	 * @return L'objet Future permettant de manipuler la tche.
+	 * @see ProcessConsumer#executor(ExecutorService)
+	 */
+	protected <T> Future<T> submit(Callable<T> task) {
+		if (this.executor != null) {
+			return this.executor.submit(task);
+		}
+		return ProcessConsumer.inBackground(task);
+	}
+
+	/**
+	 * Appendable associ  un OutputStream, permettant au ProcessConsumer de
+	 * copier directement les octets issus du process. Les mthodes de
+	 * l'interface Appendable encodent les caractres selon le charset.
+	 */
+	private static final class BinaryAppendable implements Appendable,
+			Closeable, Flushable {
+		/** Le flux destinataire des donnes. */
+		private final OutputStream out;
+		/** Le flux utilis pour l'criture de caractres. */
+		private final OutputStreamWriter writer;
+
+		BinaryAppendable(OutputStream out, Charset charset) {
+			this.out = out;
+			this.writer = new OutputStreamWriter(out, charset);
+		}
+
+		OutputStream getOutputStream() {
+			return this.out;
+		}
+
+		public Appendable append(CharSequence csq) throws IOException {
+			return this.writer.append(csq);
+		}
+
+		public Appendable append(CharSequence csq, int start, int end)
+				throws IOException {
+			return this.writer.append(csq, start, end);
+		}
+
+		public Appendable append(char c) throws IOException {
+			return this.writer.append(c);
+		}
+
+		public void flush() throws IOException {
+			this.writer.flush();
+		}
+
+		/**
+		 * Ferme le flux destinataire, sauf s'il s'agit des flux de sortie de
+		 * l'application.
+		 */
+		public void close() throws IOException {
+			this.writer.flush();
+			if ((this.out != System.out) && (this.out != System.err)) {
+				this.out.close();
+			}
+		}
 	}
 }
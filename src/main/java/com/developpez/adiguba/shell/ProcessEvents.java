@@ -0,0 +1,179 @@
+/*
+ * txnmgrflow-docgen-maven-plugin
+ * (https://github.com/dgrandemange/txnmgrflow-docgen-maven-plugin)
+ *
+ * Ce fichier ne reprend pas de code de Shell for Java (adiGuba) : il est
+ * rgi, comme le reste du projet, par la licence Apache, version 2.0
+ * (http://www.apache.org/licenses/LICENSE-2.0).
+ */
+package com.developpez.adiguba.shell;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evnements JDK Flight Recorder mis par ProcessConsumer, permettant de
+ * visualiser le lancement et l'excution des process dans un enregistrement
+ * JFR.<br>
+ * Les vnements ne sont crs que si la JVM fournit JFR (JDK 11+, 8u262+) ;
+ * ils sont manipuls comme des objets opaques, afin que les classes
+ * d'vnements ne soient jamais charges dans le cas contraire.
+ * 
+ * @author dgrandemange
+ */
+final class ProcessEvents {
+
+	private static final String CATEGORY = "Process";
+
+	/** Indique si JFR est disponible. */
+	private static final boolean AVAILABLE = isAvailable();
+
+	private ProcessEvents() {
+	}
+
+	private static boolean isAvailable() {
+		try {
+			Class.forName("jdk.jfr.FlightRecorder");
+			return true;
+		} catch (Throwable t) {
+			return false;
+		}
+	}
+
+	/**
+	 * Retourne la commande lance, pour information.
+	 * 
+	 * @param builder
+	 *            Le ProcessBuilder (peut tre null).
+	 * @return La commande, ou <b>null</b> si elle n'est pas connue.
+	 */
+	private static String command(ProcessBuilder builder) {
+		if (builder == null) {
+			return null;
+		}
+		StringBuilder sb = new StringBuilder();
+		for (String arg : builder.command()) {
+			if (sb.length() > 0) {
+				sb.append(' ');
+			}
+			sb.append(arg);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Dbute l'vnement correspondant au lancement d'un process.
+	 * 
+	 * @param builder
+	 *            Le ProcessBuilder utilis pour lancer le process.
+	 * @return L'vnement, ou <b>null</b> si JFR n'est pas disponible.
+	 */
+	static Object beginSpawn(ProcessBuilder builder) {
+		if (!AVAILABLE) {
+			return null;
+		}
+		ProcessSpawnEvent event = new ProcessSpawnEvent();
+		if (event.isEnabled()) {
+			event.command = command(builder);
+		}
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Termine l'vnement correspondant au lancement d'un process.
+	 * 
+	 * @param event
+	 *            L'vnement (peut tre null).
+	 * @param process
+	 *            Le process lanc.
+	 */
+	static void endSpawn(Object event, Process process) {
+		if (event == null) {
+			return;
+		}
+		ProcessSpawnEvent e = (ProcessSpawnEvent) event;
+		e.end();
+		if (e.shouldCommit()) {
+			e.pid = ProcessUsage.pidOf(process);
+			e.commit();
+		}
+	}
+
+	/**
+	 * Dbute l'vnement correspondant  l'excution d'un process.
+	 * 
+	 * @param builder
+	 *            Le ProcessBuilder utilis pour lancer le process (peut tre
+	 *            null).
+	 * @param process
+	 *            Le process.
+	 * @return L'vnement, ou <b>null</b> si JFR n'est pas disponible.
+	 */
+	static Object beginExecution(ProcessBuilder builder, Process process) {
+		if (!AVAILABLE) {
+			return null;
+		}
+		ProcessExecutionEvent event = new ProcessExecutionEvent();
+		if (event.isEnabled()) {
+			event.command = command(builder);
+			event.pid = ProcessUsage.pidOf(process);
+		}
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Termine l'vnement correspondant  l'excution d'un process.
+	 * 
+	 * @param event
+	 *            L'vnement (peut tre null).
+	 * @param exitValue
+	 *            Le code de retour du process.
+	 * @param timedOut
+	 *            Indique si le process a t dtruit suite  l'expiration de
+	 *            son dlai d'excution.
+	 */
+	static void endExecution(Object event, int exitValue, boolean timedOut) {
+		if (event == null) {
+			return;
+		}
+		ProcessExecutionEvent e = (ProcessExecutionEvent) event;
+		e.exitValue = exitValue;
+		e.timedOut = timedOut;
+		e.commit();
+	}
+
+	@Name("com.developpez.adiguba.shell.ProcessSpawn")
+	@Label("Process Spawn")
+	@Category(CATEGORY)
+	@Description("Process creation (fork/exec)")
+	static class ProcessSpawnEvent extends Event {
+		@Label("Command")
+		String command;
+
+		@Label("PID")
+		long pid;
+	}
+
+	@Name("com.developpez.adiguba.shell.ProcessExecution")
+	@Label("Process Execution")
+	@Category(CATEGORY)
+	@Description("Process execution, from its creation to its exit")
+	static class ProcessExecutionEvent extends Event {
+		@Label("Command")
+		String command;
+
+		@Label("PID")
+		long pid;
+
+		@Label("Exit Value")
+		int exitValue;
+
+		@Label("Timed Out")
+		boolean timedOut;
+	}
+}
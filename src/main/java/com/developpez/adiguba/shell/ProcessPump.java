@@ -0,0 +1,301 @@
+/*
+ * txnmgrflow-docgen-maven-plugin
+ * (https://github.com/dgrandemange/txnmgrflow-docgen-maven-plugin)
+ *
+ * Ce fichier ne reprend pas de code de Shell for Java (adiGuba) : il est
+ * rgi, comme le reste du projet, par la licence Apache, version 2.0
+ * (http://www.apache.org/licenses/LICENSE-2.0).
+ */
+package com.developpez.adiguba.shell;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * ProcessPump permet de vider les flux de sortie d'un grand nombre de process
+ *  l'aide d'un nombre fixe de threads.<br>
+ * Chaque thread du pump parcourt  tour de rle les flux qui lui sont
+ * associs, et n'y lit que les donnes dj disponibles : aucun thread n'est
+ * donc bloqu par un process en particulier, et le nombre de threads reste
+ * constant quel que soit le nombre de process lancs simultanment.<br>
+ * Les lectures ne sont jamais bloquantes : un thread bloqu sur un flux
+ * vide empcherait la lecture des autres flux qui lui sont associs, et un
+ * process bloqu en criture sur l'un de ceux-ci ne se terminerait jamais
+ * (interblocage ds que les flux sont plus nombreux que les threads). En
+ * contrepartie, un thread sans donnes  lire attend entre deux parcours
+ * (de 1  10 ms), ce qui peut retarder d'autant la copie de chaque flux.
+ * <br>
+ * Lorsque le process est termin, toutes ses donnes sont disponibles : le
+ * flux est alors vid de ce qui reste  lire, un buffer par parcours (sans
+ * monopoliser le thread), et au plus pendant une seconde : au del (un
+ * process fils conservant le flux ouvert), la copie choue, plutt que de
+ * laisser croire que des donnes tronques sont compltes.<br>
+ * <br>
+ * Par exemple, pour lancer plusieurs process en parallle :<br>
+ * 
+ * <pre><code>
+ * ProcessPump pump = new ProcessPump(2);
+ * try {
+ *   // depuis plusieurs threads :
+ *   int result = shell.exec(...).pump(pump)
+ *     .output(out).error(err).consume();
+ * } finally {
+ *   pump.close();
+ * }
+ * </code></pre>
+ * 
+ * @see ProcessConsumer#pump(ProcessPump)
+ * @author dgrandemange
+ */
+public class ProcessPump implements Closeable {
+
+	/** Taille du buffer de lecture lors de la copie des flux. */
+	private static final int BUF_SIZE = 8192;
+	/** Attente maximale (en ms) lorsqu'aucune donne n'est disponible. */
+	private static final long MAX_IDLE_WAIT = 10;
+	/**
+	 * Dure maximale (en ms) de la copie des dernires donnes d'un process
+	 * termin.
+	 */
+	private static final long MAX_DRAIN_TIME = 1000;
+	/** Compteur utilis pour nommer les threads. */
+	private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+	/** Les threads du pump. */
+	private final Worker[] workers;
+	/** Le pump a-t-il t ferm. */
+	private volatile boolean closed = false;
+
+	/**
+	 * Construit un ProcessPump utilisant un nombre fixe de threads.
+	 * 
+	 * @param threads
+	 *            Le nombre de threads (au moins 1).
+	 */
+	public ProcessPump(int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads < 1");
+		}
+		int poolNumber = POOL_COUNT.incrementAndGet();
+		this.workers = new Worker[threads];
+		for (int i = 0; i < threads; i++) {
+			this.workers[i] = new Worker("ProcessPumpThread-" + poolNumber
+					+ "-" + (i + 1));
+			this.workers[i].start();
+		}
+	}
+
+	/**
+	 * Associe un flux de sortie d'un process au pump : les donnes seront
+	 * copies de <code>in</code> vers <code>out</code> jusqu' la fin du
+	 * flux. Les flux ne sont pas ferms par le pump.
+	 * 
+	 * @param process
+	 *            Le process dont le flux est issu.
+	 * @param in
+	 *            Flux depuis lequel les donnes seront lues
+	 * @param out
+	 *            Flux vers lequel les donnes seront crites
+	 * @return L'objet Future permettant d'attendre la fin de la copie, ou de
+	 *         l'annuler.
+	 * @throws IllegalStateException
+	 *             Lorsque le pump a t ferm.
+	 */
+	public Future<Void> register(Process process, InputStream in,
+			OutputStream out) throws IllegalStateException {
+		if (this.closed) {
+			throw new IllegalStateException("ProcessPump closed");
+		}
+		Channel channel = new Channel(process, in, out);
+		Worker worker = this.workers[0];
+		for (Worker w : this.workers) {
+			if (w.load.get() < worker.load.get()) {
+				worker = w;
+			}
+		}
+		worker.load.incrementAndGet();
+		worker.incoming.add(channel);
+		LockSupport.unpark(worker);
+		return channel.completion;
+	}
+
+	/**
+	 * Arrte les threads du pump. Les copies en cours sont annules.
+	 */
+	public void close() {
+		this.closed = true;
+		for (Worker worker : this.workers) {
+			worker.interrupt();
+		}
+	}
+
+	/**
+	 * Indique si un process est termin.
+	 * 
+	 * @param process
+	 *            Le process
+	 * @return <b>true</b> si le process est termin.
+	 */
+	private static boolean hasExited(Process process) {
+		try {
+			process.exitValue();
+			return true;
+		} catch (IllegalThreadStateException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Un flux  copier.
+	 */
+	private static final class Channel {
+		private final Process process;
+		private final InputStream in;
+		private final OutputStream out;
+		private IOException error = null;
+		/** Date (System.nanoTime()) de la fin du process, ou 0. */
+		private long exitTime = 0;
+		private final FutureTask<Void> completion = new FutureTask<Void>(
+				new Callable<Void>() {
+					public Void call() throws Exception {
+						if (Channel.this.error != null) {
+							throw Channel.this.error;
+						}
+						return null;
+					}
+				});
+
+		Channel(Process process, InputStream in, OutputStream out) {
+			this.process = process;
+			this.in = in;
+			this.out = out;
+		}
+
+		/**
+		 * Copie les donnes disponibles.
+		 * 
+		 * @param buffer
+		 *            Buffer de copie
+		 * @return Le nombre d'octets copis, ou -1 si la copie est termine.
+		 */
+		int pump(byte[] buffer) {
+			if (this.completion.isDone()) {
+				// Annulation
+				return -1;
+			}
+			try {
+				// La fin du process est vrifie avant la lecture : une fois
+				// le process termin, toutes ses donnes sont disponibles
+				if ((this.exitTime == 0) && hasExited(this.process)) {
+					this.exitTime = System.nanoTime();
+				}
+				int available = this.in.available();
+				if (available > 0) {
+					if ((this.exitTime != 0)
+							&& (System.nanoTime() - this.exitTime > TimeUnit.MILLISECONDS
+									.toNanos(MAX_DRAIN_TIME))) {
+						// Un process fils conserve le flux ouvert
+						done(new IOException(String.format(
+								"Data still available %d ms after process exit : copy aborted",
+								MAX_DRAIN_TIME)));
+						return -1;
+					}
+					int len = this.in.read(buffer, 0,
+							Math.min(available, buffer.length));
+					if (len > 0) {
+						this.out.write(buffer, 0, len);
+						return len;
+					}
+					if (len < 0) {
+						done(null);
+						return -1;
+					}
+					return 0;
+				}
+				if (this.exitTime != 0) {
+					// Le process est termin, et ses donnes ont t copies
+					done(null);
+					return -1;
+				}
+				return 0;
+			} catch (IOException e) {
+				done(e);
+				return -1;
+			}
+		}
+
+		void done(IOException e) {
+			this.error = e;
+			this.completion.run();
+		}
+	}
+
+	/**
+	 * Thread du pump.
+	 */
+	private final class Worker extends Thread {
+		/** Flux nouvellement associs  ce thread. */
+		private final ConcurrentLinkedQueue<Channel> incoming = new ConcurrentLinkedQueue<Channel>();
+		/** Nombre de flux associs  ce thread. */
+		private final AtomicInteger load = new AtomicInteger();
+
+		Worker(String name) {
+			super(name);
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			List<Channel> channels = new ArrayList<Channel>();
+			byte[] buffer = new byte[BUF_SIZE];
+			long idleWait = 1;
+			while (!ProcessPump.this.closed && !isInterrupted()) {
+				Channel channel;
+				while ((channel = this.incoming.poll()) != null) {
+					channels.add(channel);
+				}
+
+				boolean progress = false;
+				for (Iterator<Channel> it = channels.iterator(); it.hasNext();) {
+					int len = it.next().pump(buffer);
+					if (len != 0) {
+						progress = true;
+					}
+					if (len < 0) {
+						it.remove();
+						this.load.decrementAndGet();
+					}
+				}
+
+				if (progress) {
+					idleWait = 1;
+				} else {
+					LockSupport.parkNanos(TimeUnit.MILLISECONDS
+							.toNanos(idleWait));
+					idleWait = Math.min(idleWait * 2, MAX_IDLE_WAIT);
+				}
+			}
+
+			// Fermeture du pump : annulation des copies en cours
+			for (Channel channel : channels) {
+				channel.completion.cancel(false);
+			}
+			Channel channel;
+			while ((channel = this.incoming.poll()) != null) {
+				channel.completion.cancel(false);
+			}
+		}
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ * txnmgrflow-docgen-maven-plugin
+ * (https://github.com/dgrandemange/txnmgrflow-docgen-maven-plugin)
+ *
+ * Ce fichier ne reprend pas de code de Shell for Java (adiGuba) : il est
+ * rgi, comme le reste du projet, par la licence Apache, version 2.0
+ * (http://www.apache.org/licenses/LICENSE-2.0).
+ */
+package com.developpez.adiguba.shell;
+
+import java.io.InterruptedIOException;
+
+/**
+ * Exception leve lorsqu'un process a t dtruit car il ne s'est pas termin
+ * dans le dlai qui lui tait imparti.
+ * 
+ * @see ProcessConsumer#timeout(long, java.util.concurrent.TimeUnit)
+ * @author dgrandemange
+ */
+public class ProcessTimeoutException extends InterruptedIOException {
+
+	private static final long serialVersionUID = 1L;
+
+	/** Dlai imparti au process (en ms). */
+	private final long timeout;
+	/** Dure d'excution du process (en ms). */
+	private final long elapsed;
+
+	/**
+	 * Construit une ProcessTimeoutException.
+	 * 
+	 * @param timeout
+	 *            Dlai imparti au process (en ms).
+	 * @param elapsed
+	 *            Dure d'excution du process (en ms).
+	 */
+	public ProcessTimeoutException(long timeout, long elapsed) {
+		super(String.format("Process destroyed after %d ms (timeout %d ms)",
+				elapsed, timeout));
+		this.timeout = timeout;
+		this.elapsed = elapsed;
+	}
+
+	/**
+	 * Retourne le dlai imparti au process.
+	 * 
+	 * @return Le dlai (en ms).
+	 */
+	public long getTimeout() {
+		return this.timeout;
+	}
+
+	/**
+	 * Retourne la dure d'excution du process avant sa destruction.
+	 * 
+	 * @return La dure (en ms).
+	 */
+	public long getElapsed() {
+		return this.elapsed;
+	}
+}
@@ -0,0 +1,254 @@
+/*
+ * txnmgrflow-docgen-maven-plugin
+ * (https://github.com/dgrandemange/txnmgrflow-docgen-maven-plugin)
+ *
+ * Ce fichier ne reprend pas de code de Shell for Java (adiGuba) : il est
+ * rgi, comme le reste du projet, par la licence Apache, version 2.0
+ * (http://www.apache.org/licenses/LICENSE-2.0).
+ */
+package com.developpez.adiguba.shell;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.charset.Charset;
+
+/**
+ * Consommation de ressources d'un process, releve via le pseudo systme de
+ * fichiers <code>/proc</code> (Linux uniquement).<br>
+ * Les temps CPU et le pic de mmoire rsidente (RSS) sont chantillonns
+ * priodiquement pendant l'excution du process : les derniers instants
+ * d'excution peuvent donc ne pas tre comptabiliss, et un process trs bref
+ * peut ne jamais tre chantillonn (les valeurs correspondantes valent alors
+ * -1). Le temps coul est quant  lui toujours exact.<br>
+ * Seul le process lanc est observ, et non ses ventuels fils : une commande
+ * lance au travers du shell systme (via {@link Shell#command(String)})
+ * n'est donc mesure que si le shell se remplace par celle-ci. Pour mesurer
+ * un programme, il faut le lancer directement (via
+ * {@link Shell#exec(String...)} ou un ProcessBuilder).<br>
+ * <br>
+ * Par exemple :<br>
+ * 
+ * <pre><code>
+ * ProcessConsumer pc = shell.exec("dot", "-Tsvg", "-O", "graph.dot");
+ * pc.accounting(true).consume();
+ * ProcessUsage usage = pc.getUsage();
+ * if (usage != null) {
+ *   System.out.println(usage);
+ * }
+ * </code></pre>
+ * 
+ * @see ProcessConsumer#accounting(boolean)
+ * @author dgrandemange
+ */
+public class ProcessUsage {
+
+	/**
+	 * Nombre de "ticks" d'horloge par seconde utilis par <code>/proc</code>
+	 * (USER_HZ, qui vaut 100 sur la quasi totalit des noyaux Linux).
+	 */
+	private static final long CLOCK_TICKS = 100;
+
+	private static final Charset ASCII = Charset.forName("US-ASCII");
+
+	/** Identifiant du process. */
+	private final long pid;
+	/** Date de dmarrage de la mesure (en ns). */
+	private final long startNanos;
+	/** Date de fin de la mesure (en ns), 0 si le process est en cours. */
+	private long endNanos = 0;
+	/** Temps CPU utilisateur (en ticks), -1 si inconnu. */
+	private long userTicks = -1;
+	/** Temps CPU systme (en ticks), -1 si inconnu. */
+	private long systemTicks = -1;
+	/** Pic de mmoire rsidente (en ko), -1 si inconnu. */
+	private long peakRssKb = -1;
+
+	/**
+	 * Construit un relev pour le process indiqu, dmarr  l'instant
+	 * prsent.
+	 * 
+	 * @param pid
+	 *            Identifiant du process.
+	 */
+	ProcessUsage(long pid) {
+		this.pid = pid;
+		this.startNanos = System.nanoTime();
+	}
+
+	/**
+	 * Indique si le relev de consommation est disponible sur ce systme.
+	 * 
+	 * @return <b>true</b> si <code>/proc</code> est disponible.
+	 */
+	public static boolean isSupported() {
+		return new File("/proc/self/stat").isFile();
+	}
+
+	/**
+	 * Retourne l'identifiant systme d'un process, via
+	 * <code>Process.pid()</code> lorsque cette mthode existe (Java 9+), ou via
+	 * le champ <code>pid</code> de l'implmentation Unix de Process sinon.
+	 * 
+	 * @param process
+	 *            Le process.
+	 * @return L'identifiant du process, ou -1 s'il n'a pu tre dtermin.
+	 */
+	static long pidOf(Process process) {
+		try {
+			Method method = Process.class.getMethod("pid");
+			return ((Number) method.invoke(process)).longValue();
+		} catch (Exception e) {
+			// Java 8 ou antrieur
+		}
+		try {
+			Field field = process.getClass().getDeclaredField("pid");
+			field.setAccessible(true);
+			return ((Number) field.get(process)).longValue();
+		} catch (Exception e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Echantillonne la consommation du process. Cette mthode est sans effet
+	 * si le process est termin.
+	 */
+	void sample() {
+		String stat;
+		try {
+			stat = readFirstLine(new File("/proc/" + this.pid + "/stat"));
+		} catch (IOException e) {
+			// Process termin
+			return;
+		}
+		// Le nom de la commande (2me champ) peut contenir des espaces
+		int pos = stat.lastIndexOf(')');
+		if (pos < 0) {
+			return;
+		}
+		String[] fields = stat.substring(pos + 2).split(" ");
+		long peakRss = readPeakRss();
+		synchronized (this) {
+			if (fields.length > 12) {
+				// Champs 14 (utime) et 15 (stime) de /proc/<pid>/stat
+				this.userTicks = Long.parseLong(fields[11]);
+				this.systemTicks = Long.parseLong(fields[12]);
+			}
+			this.peakRssKb = Math.max(this.peakRssKb, peakRss);
+		}
+	}
+
+	/**
+	 * Lit le pic de mmoire rsidente (VmHWM) du process.
+	 * 
+	 * @return Le pic de mmoire (en ko), ou -1 si indisponible.
+	 */
+	private long readPeakRss() {
+		try {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(
+					new FileInputStream("/proc/" + this.pid + "/status"), ASCII));
+			try {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (line.startsWith("VmHWM:")) {
+						String value = line.substring("VmHWM:".length()).trim();
+						return Long.parseLong(value.split("\\s+")[0]);
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (IOException e) {
+			// Process termin
+		} catch (NumberFormatException e) {
+			// Format inattendu
+		}
+		return -1;
+	}
+
+	private static String readFirstLine(File file) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(file), ASCII));
+		try {
+			String line = reader.readLine();
+			if (line == null) {
+				throw new IOException("Empty file " + file);
+			}
+			return line;
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Termine la mesure du temps coul.
+	 */
+	synchronized void stop() {
+		if (this.endNanos == 0) {
+			this.endNanos = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Retourne l'identifiant du process.
+	 * 
+	 * @return L'identifiant du process.
+	 */
+	public long getPid() {
+		return this.pid;
+	}
+
+	/**
+	 * Retourne le temps coul entre le dmarrage et la fin du process.
+	 * 
+	 * @return Le temps coul (en ms).
+	 */
+	public synchronized long getWallTime() {
+		long end = this.endNanos == 0 ? System.nanoTime() : this.endNanos;
+		return (end - this.startNanos) / 1000000L;
+	}
+
+	/**
+	 * Retourne le temps CPU consomm en mode utilisateur.
+	 * 
+	 * @return Le temps CPU (en ms), ou -1 si inconnu.
+	 */
+	public synchronized long getUserTime() {
+		return toMillis(this.userTicks);
+	}
+
+	/**
+	 * Retourne le temps CPU consomm en mode systme.
+	 * 
+	 * @return Le temps CPU (en ms), ou -1 si inconnu.
+	 */
+	public synchronized long getSystemTime() {
+		return toMillis(this.systemTicks);
+	}
+
+	/**
+	 * Retourne le pic de mmoire rsidente (RSS) du process.
+	 * 
+	 * @return Le pic de mmoire (en ko), ou -1 si inconnu.
+	 */
+	public synchronized long getPeakRss() {
+		return this.peakRssKb;
+	}
+
+	private static long toMillis(long ticks) {
+		return ticks < 0 ? -1 : ticks * 1000L / CLOCK_TICKS;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				"pid %d, wall %d ms, user %d ms, sys %d ms, peak RSS %d kB",
+				getPid(), getWallTime(), getUserTime(), getSystemTime(),
+				getPeakRss());
+	}
+}
@@ -0,0 +1,158 @@
+package fr.dgrandemange.txnmgr.flow.docgen;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Content addressed store of generated artifacts, shared by all
+ * configurations (and modules) generating their documentation under a same
+ * directory<br>
+ * Artifacts are keyed by the SHA-256 digest of the DOT content they were
+ * produced from, and stored as "&lt;store&gt;/&lt;2 first digest
+ * chars&gt;/&lt;digest&gt;&lt;suffix&gt;" (i.e. ".dot", ".svg")<br>
+ * Documentation directories hard link their files to the store (files are
+ * copied when the file system does not support hard links), so that a
+ * subflow shared by several configurations is laid out and stored once<br>
+ * NB : as stored files may be hard linked from documentation directories,
+ * those files must be replaced (deleted, then written), never overwritten in
+ * place<br>
+ * Store may be concurrently accessed (by conversion threads, or by several
+ * executions) : files are put in the store by an atomic move<br>
+ *
+ * @author dgrandemange
+ *
+ */
+public class ContentStore {
+
+	public static final String DIRNAME = ".store";
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private final File dir;
+
+	public ContentStore(File dir) {
+		this.dir = dir;
+	}
+
+	public File getDir() {
+		return dir;
+	}
+
+	/**
+	 * @return SHA-256 digest of a file content, as an hexadecimal string
+	 */
+	public static String digest(File file) throws IOException {
+		MessageDigest md;
+		try {
+			md = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		InputStream is = new FileInputStream(file);
+		try {
+			byte[] buffer = new byte[8192];
+			int len;
+			while ((len = is.read(buffer)) > 0) {
+				md.update(buffer, 0, len);
+			}
+		} finally {
+			is.close();
+		}
+		byte[] digest = md.digest();
+		char[] hex = new char[digest.length * 2];
+		for (int i = 0; i < digest.length; i++) {
+			hex[2 * i] = HEX_DIGITS[(digest[i] >> 4) & 0x0F];
+			hex[2 * i + 1] = HEX_DIGITS[digest[i] & 0x0F];
+		}
+		return new String(hex);
+	}
+
+	/**
+	 * @return stored file of an artifact (which may not exist)
+	 */
+	public File getFile(String digest, String suffix) {
+		return new File(new File(dir, digest.substring(0, 2)), digest + suffix);
+	}
+
+	/**
+	 * Links a stored artifact to a documentation file, replacing it
+	 *
+	 * @return <code>false</code> if artifact is not stored
+	 */
+	public boolean fetch(String digest, String suffix, File file)
+			throws IOException {
+		File storedFile = getFile(digest, suffix);
+		if (!storedFile.isFile()) {
+			return false;
+		}
+		link(storedFile, file);
+		return true;
+	}
+
+	/**
+	 * Stores a documentation file as an artifact (file is then shared with
+	 * the store), unless already stored
+	 */
+	public void put(String digest, String suffix, File file)
+			throws IOException {
+		File storedFile = getFile(digest, suffix);
+		if (storedFile.isFile()) {
+			return;
+		}
+		File storedDir = storedFile.getParentFile();
+		if (!storedDir.isDirectory() && !storedDir.mkdirs()
+				&& !storedDir.isDirectory()) {
+			throw new IOException(String.format(
+					"unable to create directory '%s'", storedDir));
+		}
+
+		File tmpFile = File.createTempFile(digest, ".tmp", storedDir);
+		try {
+			link(file, tmpFile);
+			try {
+				try {
+					Files.move(tmpFile.toPath(), storedFile.toPath(),
+							StandardCopyOption.ATOMIC_MOVE);
+				} catch (AtomicMoveNotSupportedException e) {
+					Files.move(tmpFile.toPath(), storedFile.toPath());
+				}
+			} catch (FileAlreadyExistsException e) {
+				// Concurrently stored
+			}
+		} finally {
+			tmpFile.delete();
+		}
+	}
+
+	/**
+	 * Replaces a file by a hard link to an existing one, or by a copy of it
+	 * if hard links are not supported (i.e. across file systems)
+	 */
+	static void link(File existing, File file) throws IOException {
+		file.delete();
+		try {
+			Files.createLink(file.toPath(), existing.toPath());
+			return;
+		} catch (UnsupportedOperationException | FileSystemException e) {
+			// Link refusals (cross-device link, file system without hard
+			// links, too many links) are reported as generic file system
+			// errors, actual errors (missing file, access denied, ...) by
+			// its subclasses
+			if ((e instanceof FileSystemException)
+					&& (e.getClass() != FileSystemException.class)) {
+				throw e;
+			}
+		}
+		Files.copy(existing.toPath(), file.toPath(),
+				StandardCopyOption.REPLACE_EXISTING);
+	}
+}
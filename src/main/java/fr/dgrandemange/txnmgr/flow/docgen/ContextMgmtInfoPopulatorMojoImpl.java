@@ -4,10 +4,14 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.Array;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.maven.plugin.logging.Log;
 
@@ -26,9 +30,22 @@ import fr.dgrandemange.txnmgrworkflow.service.support.ContextMgmtInfoPopulatorAb
 public class ContextMgmtInfoPopulatorMojoImpl extends
 		ContextMgmtInfoPopulatorAbstractImpl {
 
-	private ClassLoader classLoader;
+	private final ClassLoader classLoader;
 
-	private Log log;
+	private final Log log;
+
+	private final ConcurrentMap<String, Map<String, String[]>> updCtxAttrByTransIdCache = new ConcurrentHashMap<String, Map<String, String[]>>();
+
+	/**
+	 * Cumulated time spent resolving participant classes annotations
+	 */
+	private final AtomicLong reflectionNanos = new AtomicLong();
+
+	/**
+	 * Participants by group (sorted by group name), as processed since last
+	 * {@link #clearParticipants()} call
+	 */
+	private final Map<String, List<ParticipantInfo>> participantsByGroup = new TreeMap<String, List<ParticipantInfo>>();
 
 	public ContextMgmtInfoPopulatorMojoImpl(ClassLoader classLoader, Log log) {
 		this.classLoader = classLoader;
@@ -38,59 +55,124 @@ public class ContextMgmtInfoPopulatorMojoImpl extends
 	@Override
 	public void processParticipantAnnotations(
 			Map<String, List<ParticipantInfo>> jPosTxnMgrGroups) {
+		synchronized (participantsByGroup) {
+			participantsByGroup.putAll(jPosTxnMgrGroups);
+		}
 		for (Entry<String, List<ParticipantInfo>> entry : jPosTxnMgrGroups
 				.entrySet()) {
 			for (ParticipantInfo participantInfo : entry.getValue()) {
 				if (participantInfo instanceof SubFlowInfo) {
 					continue;
 				}
-				Map<String, String[]> updCtxAttrByTransId = new HashMap<String, String[]>();
-				participantInfo.setUpdCtxAttrByTransId(updCtxAttrByTransId);
-				try {
-					@SuppressWarnings("rawtypes")
-					Class pClazz;
-					if (classLoader != null) {
-						pClazz = Class.forName(participantInfo.getClazz(),
-								true, classLoader);
-					} else {
-						pClazz = Class.forName(participantInfo.getClazz());
-					}
-					Annotation[] annotations = pClazz.getAnnotations();
-					for (Annotation annotation : annotations) {
-
-						Class<? extends Annotation> annotationType = annotation
-								.annotationType();
-						if ("UpdateContextRules".equals(
-								annotationType.getSimpleName())) {
-							try {
-								Method method_value = annotationType.getMethod(
-										"value", new Class[] {});
-								Object invoked_value = method_value.invoke(
-										annotation, new Object[] {});
-
-								if (invoked_value.getClass().isArray()) {
-									int length = Array.getLength(invoked_value);
-									for (int i = 0; i < length; i++) {
-										processUpdateContextRuleAnnotation(
-												updCtxAttrByTransId,
-												Array.get(invoked_value, i));
-									}
-								} else {
-									processUpdateContextRuleAnnotation(
-											updCtxAttrByTransId, invoked_value);
-								}
-							} catch (Exception e) {
-								log.warn(e.getMessage());
+				participantInfo
+						.setUpdCtxAttrByTransId(new TreeMap<String, String[]>(
+								getUpdCtxAttrByTransId(participantInfo
+										.getClazz())));
+			}
+		}
+	}
+
+	/**
+	 * Context attributes updated by a participant class are only resolved once
+	 * per populator instance, and sorted by transition id so that generated
+	 * labels and tooltips always list them in the same order<br>
+	 * Cache may be concurrently accessed<br>
+	 * 
+	 * @param clazz
+	 *            Participant class name
+	 * @return context attribute names by transition id
+	 */
+	protected Map<String, String[]> getUpdCtxAttrByTransId(String clazz) {
+		Map<String, String[]> updCtxAttrByTransId = updCtxAttrByTransIdCache
+				.get(clazz);
+		if (updCtxAttrByTransId == null) {
+			long start = System.nanoTime();
+			Object event = DocGenEvents.beginAnnotationResolution(clazz);
+			updCtxAttrByTransId = resolveUpdCtxAttrByTransId(clazz);
+			DocGenEvents.endAnnotationResolution(event,
+					updCtxAttrByTransId.size());
+			reflectionNanos.addAndGet(System.nanoTime() - start);
+			Map<String, String[]> concurrentlyResolved = updCtxAttrByTransIdCache
+					.putIfAbsent(clazz, updCtxAttrByTransId);
+			if (concurrentlyResolved != null) {
+				updCtxAttrByTransId = concurrentlyResolved;
+			}
+		}
+		return updCtxAttrByTransId;
+	}
+
+	/**
+	 * @return participants by group, as processed since last
+	 *         {@link #clearParticipants()} call
+	 */
+	public Map<String, List<ParticipantInfo>> getParticipants() {
+		synchronized (participantsByGroup) {
+			return new LinkedHashMap<String, List<ParticipantInfo>>(
+					participantsByGroup);
+		}
+	}
+
+	/**
+	 * Forgets processed participants (resolved annotations are kept)
+	 */
+	public void clearParticipants() {
+		synchronized (participantsByGroup) {
+			participantsByGroup.clear();
+		}
+	}
+
+	/**
+	 * @return cumulated time (in ns) spent resolving participant classes
+	 *         annotations since this populator creation
+	 */
+	public long getReflectionNanos() {
+		return reflectionNanos.get();
+	}
+
+	protected Map<String, String[]> resolveUpdCtxAttrByTransId(String clazz) {
+		Map<String, String[]> updCtxAttrByTransId = new TreeMap<String, String[]>();
+		try {
+			@SuppressWarnings("rawtypes")
+			Class pClazz;
+			if (classLoader != null) {
+				pClazz = Class.forName(clazz, true, classLoader);
+			} else {
+				pClazz = Class.forName(clazz);
+			}
+			Annotation[] annotations = pClazz.getAnnotations();
+			for (Annotation annotation : annotations) {
+
+				Class<? extends Annotation> annotationType = annotation
+						.annotationType();
+				if ("UpdateContextRules".equals(annotationType.getSimpleName())) {
+					try {
+						Method method_value = annotationType.getMethod(
+								"value", new Class[] {});
+						Object invoked_value = method_value.invoke(annotation,
+								new Object[] {});
+
+						if (invoked_value.getClass().isArray()) {
+							int length = Array.getLength(invoked_value);
+							for (int i = 0; i < length; i++) {
+								processUpdateContextRuleAnnotation(
+										updCtxAttrByTransId,
+										Array.get(invoked_value, i));
 							}
+						} else {
+							processUpdateContextRuleAnnotation(
+									updCtxAttrByTransId, invoked_value);
 						}
-
+					} catch (Exception e) {
+						log.warn(e.getMessage());
 					}
-				} catch (ClassNotFoundException e) {
-					// Safe to ignore : class has not been found in the
-					// classpath but we don't bother
 				}
+
 			}
+		} catch (ClassNotFoundException e) {
+			// Safe to ignore : class has not been found in the
+			// classpath but we don't bother
 		}
+		return updCtxAttrByTransId;
 	}
 
 	protected void processUpdateContextRuleAnnotation(
@@ -0,0 +1,236 @@
+package fr.dgrandemange.txnmgr.flow.docgen;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import fr.dgrandemange.ctxmgmt.annotation.UpdateContextRule;
+import fr.dgrandemange.txnmgrworkflow.model.ParticipantInfo;
+import fr.dgrandemange.txnmgrworkflow.model.SubFlowInfo;
+
+/**
+ * Context attributes lineage : for each context attribute, the participants
+ * (and their transitions) putting it in the context, across all groups and
+ * subflows<br>
+ * Computed in a single pass over the participants model, then written as
+ * JSON ("ctx-attr-lineage.json") and as a static page of the documentation
+ * site ("ctx-attr-lineage.html")<br>
+ *
+ * @author dgrandemange
+ *
+ */
+public class CtxAttrLineage {
+
+	public static final String JSON_FILENAME = "ctx-attr-lineage.json";
+
+	public static final String PAGE_FILENAME = "ctx-attr-lineage.html";
+
+	/**
+	 * A participant putting an attribute in the context
+	 */
+	public static class Producer {
+		private final String group;
+
+		private final String clazz;
+
+		private final String transition;
+
+		Producer(String group, String clazz, String transition) {
+			this.group = group;
+			this.clazz = clazz;
+			this.transition = transition;
+		}
+
+		public String getGroup() {
+			return group;
+		}
+
+		public String getClazz() {
+			return clazz;
+		}
+
+		/**
+		 * @return transition name, or <code>null</code> if attribute is put
+		 *         whatever the transition
+		 */
+		public String getTransition() {
+			return transition;
+		}
+	}
+
+	/**
+	 * Producers by attribute name (attribute names are only sorted when
+	 * written)
+	 */
+	private final Map<String, List<Producer>> producers = new HashMap<String, List<Producer>>();
+
+	private int participantCount;
+
+	public void addParticipants(
+			Map<String, List<ParticipantInfo>> participantsByGroup) {
+		for (Entry<String, List<ParticipantInfo>> entry : participantsByGroup
+				.entrySet()) {
+			String group = entry.getKey();
+			for (ParticipantInfo participant : entry.getValue()) {
+				if (participant instanceof SubFlowInfo) {
+					continue;
+				}
+				participantCount++;
+				Map<String, String[]> updCtxAttrByTransId = participant
+						.getUpdCtxAttrByTransId();
+				if (updCtxAttrByTransId == null) {
+					continue;
+				}
+				for (Entry<String, String[]> rule : updCtxAttrByTransId
+						.entrySet()) {
+					if (rule.getValue() == null) {
+						continue;
+					}
+					String transition = UpdateContextRule.DEFAULT_ID
+							.equals(rule.getKey()) ? null : rule.getKey();
+					Producer producer = new Producer(group,
+							participant.getClazz(), transition);
+					for (String attrName : rule.getValue()) {
+						List<Producer> attrProducers = producers.get(attrName);
+						if (attrProducers == null) {
+							attrProducers = new ArrayList<Producer>();
+							producers.put(attrName, attrProducers);
+						}
+						attrProducers.add(producer);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return producers by attribute name, sorted by attribute name
+	 */
+	public Map<String, List<Producer>> getProducers() {
+		return new TreeMap<String, List<Producer>>(producers);
+	}
+
+	public int getAttributeCount() {
+		return producers.size();
+	}
+
+	public void write(File file) throws IOException {
+		JsonWriter json = new JsonWriter(new OutputStreamWriter(
+				new FileOutputStream(file), "UTF-8"));
+		try {
+			json.beginObject();
+			json.name("participants").value(participantCount);
+			json.name("attributes").beginArray();
+			for (Entry<String, List<Producer>> entry : getProducers()
+					.entrySet()) {
+				json.beginObject();
+				json.name("name").value(entry.getKey());
+				json.name("producers").beginArray();
+				for (Producer producer : entry.getValue()) {
+					json.beginObject();
+					json.name("group").value(producer.group);
+					json.name("class").value(producer.clazz);
+					// null if put whatever the transition
+					json.name("transition").value(producer.transition);
+					json.endObject();
+				}
+				json.endArray();
+				json.endObject();
+			}
+			json.endArray();
+			json.endObject();
+		} finally {
+			json.close();
+		}
+	}
+
+	/**
+	 * Writes the lineage page, using the documentation site style sheet
+	 */
+	public void writePage(File file, String title) throws IOException {
+		Writer out = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(file), "UTF-8"));
+		try {
+			out.write("<!DOCTYPE html>\n<html>\n<head>\n");
+			out.write("<meta http-equiv=\"content-type\" content=\"text/html; charset=UTF-8\">\n");
+			out.write("<title>");
+			escape(out, title);
+			out.write(" - context attributes lineage</title>\n");
+			out.write("<link REL=\"StyleSheet\" HREF=\"jposworkflow.css\" TYPE=\"text/css\" />\n");
+			out.write("</head>\n<body class=\"lineage\">\n");
+			out.write("<p><a href=\"index.html\">Back to flow</a></p>\n");
+			out.write("<h3>");
+			escape(out, title);
+			out.write(" - context attributes lineage</h3>\n");
+			out.write(String.format(
+					"<p>%d attribute(s) put in context, out of %d participant(s)</p>\n",
+					producers.size(), participantCount));
+
+			out.write("<table class=\"lineageTable\">\n");
+			out.write("<tr><th>Attribute</th><th>Group</th><th>Participant</th><th>Transition</th></tr>\n");
+			for (Entry<String, List<Producer>> entry : getProducers()
+					.entrySet()) {
+				List<Producer> attrProducers = entry.getValue();
+				for (int i = 0; i < attrProducers.size(); i++) {
+					Producer producer = attrProducers.get(i);
+					out.write("<tr>");
+					if (i == 0) {
+						out.write(String.format(
+								"<td class=\"attribute\" rowspan=\"%d\">",
+								attrProducers.size()));
+						escape(out, entry.getKey());
+						out.write("</td>");
+					}
+					out.write("<td>");
+					escape(out, producer.group);
+					out.write("</td><td>");
+					escape(out, producer.clazz);
+					out.write("</td><td>");
+					if (producer.transition != null) {
+						escape(out, producer.transition);
+					} else {
+						out.write("<i>any</i>");
+					}
+					out.write("</td></tr>\n");
+				}
+			}
+			out.write("</table>\n</body>\n</html>\n");
+		} finally {
+			out.close();
+		}
+	}
+
+	private static void escape(Writer out, String value) throws IOException {
+		if (value == null) {
+			return;
+		}
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '&':
+				out.write("&amp;");
+				break;
+			case '<':
+				out.write("&lt;");
+				break;
+			case '>':
+				out.write("&gt;");
+				break;
+			case '"':
+				out.write("&quot;");
+				break;
+			default:
+				out.write(c);
+			}
+		}
+	}
+}
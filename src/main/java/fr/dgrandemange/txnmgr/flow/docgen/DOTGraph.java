@@ -0,0 +1,232 @@
+package fr.dgrandemange.txnmgr.flow.docgen;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Nodes and edges of a graph, as read back from its DOT content, for the
+ * search index and the overlays computed over the generated graphs
+ * (latency, traffic) : each DOT content is parsed once, and the resulting
+ * graph shared by all of them<br>
+ * Nodes and edges are named as in the SVG titles, so that the viewer maps
+ * them to SVG elements through the graph index (see {@link SVGGraphIndex})<br>
+ *
+ * @author dgrandemange
+ *
+ */
+class DOTGraph {
+
+	static class Node {
+		private final String id;
+
+		/**
+		 * Words of the node id and attributes (participant class name, group
+		 * name, ...)
+		 */
+		private final List<String> words = new ArrayList<String>();
+
+		/**
+		 * Linked graph name (subflow), or <code>null</code>
+		 */
+		private String link;
+
+		Node(String id) {
+			this.id = id;
+			words.add(id);
+		}
+
+		String getId() {
+			return id;
+		}
+
+		List<String> getWords() {
+			return words;
+		}
+
+		String getLink() {
+			return link;
+		}
+	}
+
+	static class Edge {
+		private final String tail;
+
+		private final String head;
+
+		private final String name;
+
+		/**
+		 * Label as plain text (transition name), or <code>null</code>
+		 */
+		private final String label;
+
+		/**
+		 * Words of the edge attributes
+		 */
+		private final List<String> words = new ArrayList<String>();
+
+		Edge(String tail, String head, String edgeOp, String label) {
+			this.tail = tail;
+			this.head = head;
+			this.name = tail + edgeOp + head;
+			this.label = label;
+		}
+
+		String getTail() {
+			return tail;
+		}
+
+		String getHead() {
+			return head;
+		}
+
+		String getName() {
+			return name;
+		}
+
+		String getLabel() {
+			return label;
+		}
+
+		List<String> getWords() {
+			return words;
+		}
+	}
+
+	private final Map<String, Node> nodes = new LinkedHashMap<String, Node>();
+
+	private final List<Edge> edges = new ArrayList<Edge>();
+
+	private DOTGraph() {
+	}
+
+	static DOTGraph parse(String dotContent) {
+		final DOTGraph graph = new DOTGraph();
+		DOTParser.parse(dotContent, new DOTParser.Handler() {
+
+			public void node(String id, Map<String, String> attributes) {
+				Node node = graph.addNode(id);
+				for (Map.Entry<String, String> attribute : attributes
+						.entrySet()) {
+					node.words.addAll(DOTParser.words(attribute.getValue()));
+					String name = attribute.getKey();
+					if (("URL".equalsIgnoreCase(name) || "href".equals(name))
+							&& (attribute.getValue().length() > 0)) {
+						node.link = attribute.getValue();
+					}
+				}
+			}
+
+			public void edge(String tail, String head, String edgeOp,
+					Map<String, String> attributes) {
+				graph.addNode(tail);
+				graph.addNode(head);
+				String label = attributes.get("label");
+				Edge edge = new Edge(tail, head, edgeOp,
+						label != null ? DOTParser.toText(label) : null);
+				for (String value : attributes.values()) {
+					edge.words.addAll(DOTParser.words(value));
+				}
+				graph.edges.add(edge);
+			}
+		});
+		return graph;
+	}
+
+	private Node addNode(String id) {
+		Node node = nodes.get(id);
+		if (node == null) {
+			node = new Node(id);
+			nodes.put(id, node);
+		}
+		return node;
+	}
+
+	/**
+	 * @return node, or <code>null</code> if unknown
+	 */
+	Node getNode(String id) {
+		return nodes.get(id);
+	}
+
+	Collection<Node> getNodes() {
+		return nodes.values();
+	}
+
+	List<Edge> getEdges() {
+		return edges;
+	}
+
+	/**
+	 * @return nodes in topological order, nodes belonging to a cycle (if
+	 *         any) being appended in declaration order
+	 */
+	List<Node> sort() {
+		Map<String, Integer> inDegrees = new LinkedHashMap<String, Integer>();
+		Map<String, List<Edge>> outEdges = getOutEdges();
+		for (String id : nodes.keySet()) {
+			inDegrees.put(id, 0);
+		}
+		for (Edge edge : edges) {
+			inDegrees.put(edge.head, inDegrees.get(edge.head) + 1);
+		}
+
+		List<Node> sorted = new ArrayList<Node>(nodes.size());
+		List<String> ready = new ArrayList<String>();
+		for (Map.Entry<String, Integer> entry : inDegrees.entrySet()) {
+			if (entry.getValue() == 0) {
+				ready.add(entry.getKey());
+			}
+		}
+		for (int i = 0; i < ready.size(); i++) {
+			String id = ready.get(i);
+			sorted.add(nodes.get(id));
+			for (Edge edge : outEdges.get(id)) {
+				int inDegree = inDegrees.get(edge.head) - 1;
+				inDegrees.put(edge.head, inDegree);
+				if (inDegree == 0) {
+					ready.add(edge.head);
+				}
+			}
+		}
+		if (sorted.size() < nodes.size()) {
+			for (Map.Entry<String, Integer> entry : inDegrees.entrySet()) {
+				if (entry.getValue() > 0) {
+					sorted.add(nodes.get(entry.getKey()));
+				}
+			}
+		}
+		return sorted;
+	}
+
+	/**
+	 * @return edges by tail node id
+	 */
+	Map<String, List<Edge>> getOutEdges() {
+		Map<String, List<Edge>> outEdges = new LinkedHashMap<String, List<Edge>>();
+		for (String id : nodes.keySet()) {
+			outEdges.put(id, new ArrayList<Edge>());
+		}
+		for (Edge edge : edges) {
+			outEdges.get(edge.tail).add(edge);
+		}
+		return outEdges;
+	}
+
+	/**
+	 * @return edges by head node id
+	 */
+	Map<String, List<Edge>> getInEdges() {
+		Map<String, List<Edge>> inEdges = new LinkedHashMap<String, List<Edge>>();
+		for (String id : nodes.keySet()) {
+			inEdges.put(id, new ArrayList<Edge>());
+		}
+		for (Edge edge : edges) {
+			inEdges.get(edge.head).add(edge);
+		}
+		return inEdges;
+	}
+}
@@ -0,0 +1,302 @@
+package fr.dgrandemange.txnmgr.flow.docgen;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Minimal DOT statements parser : node and edge statements are recognized,
+ * with their attributes, other statements (graph attributes, defaults) are
+ * skipped<br>
+ * Content is scanned once, quoted and HTML strings being returned without
+ * their delimiters<br>
+ *
+ * @author dgrandemange
+ *
+ */
+class DOTParser {
+
+	/**
+	 * Words of attribute values (class names, context attribute names, ...)
+	 */
+	private static final Pattern WORD_PATTERN = Pattern.compile("[\\w$.\\-]+");
+
+	/**
+	 * DOT escape sequences (line breaks and justification)
+	 */
+	private static final Pattern ESCAPE_PATTERN = Pattern
+			.compile("\\\\[nlrNGETHL]");
+
+	private static final Pattern HTML_TAG_PATTERN = Pattern.compile("<[^>]*>");
+
+	public interface Handler {
+		/**
+		 * Called for each node statement (so possibly more than once for a
+		 * given node)
+		 */
+		void node(String id, Map<String, String> attributes);
+
+		/**
+		 * @param edgeOp
+		 *            "-&gt;" (directed graph) or "--"
+		 */
+		void edge(String tail, String head, String edgeOp,
+				Map<String, String> attributes);
+	}
+
+	private final String content;
+
+	private final Handler handler;
+
+	private int pos = 0;
+
+	/**
+	 * Node ids of the current statement (more than one for an edge
+	 * statement)
+	 */
+	private final List<String> ids = new ArrayList<String>();
+
+	private final Map<String, String> attributes = new LinkedHashMap<String, String>();
+
+	private String edgeOp = "->";
+
+	private DOTParser(String content, Handler handler) {
+		this.content = content;
+		this.handler = handler;
+	}
+
+	/**
+	 * @return attribute value as plain text (without HTML tags nor DOT escape
+	 *         sequences)
+	 */
+	public static String toText(String value) {
+		return ESCAPE_PATTERN.matcher(
+				HTML_TAG_PATTERN.matcher(value).replaceAll(" ")).replaceAll(
+				" ").trim();
+	}
+
+	/**
+	 * @return whether a text is a single word
+	 */
+	public static boolean isWord(String text) {
+		return WORD_PATTERN.matcher(text).matches();
+	}
+
+	/**
+	 * @return words of a text (leading and trailing '.' and '-' removed)
+	 */
+	public static List<String> words(String text) {
+		List<String> words = new ArrayList<String>();
+		Matcher matcher = WORD_PATTERN.matcher(ESCAPE_PATTERN.matcher(text)
+				.replaceAll(" "));
+		while (matcher.find()) {
+			String word = matcher.group();
+			int start = 0;
+			int end = word.length();
+			while ((start < end)
+					&& ((word.charAt(start) == '.') || (word.charAt(start) == '-'))) {
+				start++;
+			}
+			while ((end > start)
+					&& ((word.charAt(end - 1) == '.') || (word.charAt(end - 1) == '-'))) {
+				end--;
+			}
+			if (start < end) {
+				words.add(word.substring(start, end));
+			}
+		}
+		return words;
+	}
+
+	/**
+	 * Parses a DOT content, calling handler for each node and edge statement
+	 */
+	public static void parse(String content, Handler handler) {
+		new DOTParser(content, handler).scan();
+	}
+
+	private void scan() {
+		String previous = null;
+		String token;
+		// Whether next id is a graph or subgraph name
+		boolean graphName = false;
+		while ((token = nextToken()) != null) {
+			if (":".equals(token)) {
+				// Node port
+				nextToken();
+				continue;
+			}
+			if (graphName && isId(token)) {
+				graphName = false;
+				previous = token;
+				continue;
+			}
+			graphName = false;
+			if ("->".equals(token) || "--".equals(token)) {
+				edgeOp = token;
+			} else if ("[".equals(token)) {
+				readAttributes(!ids.isEmpty());
+			} else if ("{".equals(token) || "}".equals(token)
+					|| ";".equals(token)) {
+				endStatement();
+			} else if ("=".equals(token)) {
+				// Graph attribute : "name = value"
+				ids.clear();
+				nextToken();
+			} else if (isId(token)) {
+				if (("->".equals(previous) || "--".equals(previous))
+						&& !ids.isEmpty()) {
+					ids.add(token);
+				} else {
+					endStatement();
+					if (!isKeyword(token)) {
+						ids.add(token);
+					} else if (!"node".equalsIgnoreCase(token)
+							&& !"edge".equalsIgnoreCase(token)) {
+						graphName = true;
+					}
+				}
+			}
+			previous = token;
+		}
+		endStatement();
+	}
+
+	private void readAttributes(boolean record) {
+		String token;
+		String name = null;
+		boolean value = false;
+		while (((token = nextToken()) != null) && !"]".equals(token)) {
+			if ("=".equals(token)) {
+				value = true;
+			} else if (",".equals(token) || ";".equals(token)) {
+				value = false;
+			} else if (value) {
+				if (record && (name != null)) {
+					attributes.put(name, token);
+				}
+				value = false;
+			} else {
+				name = token;
+			}
+		}
+	}
+
+	private void endStatement() {
+		if (ids.size() == 1) {
+			handler.node(ids.get(0), attributes);
+		} else {
+			for (int i = 0; i + 1 < ids.size(); i++) {
+				handler.edge(ids.get(i), ids.get(i + 1), edgeOp,
+						attributes);
+			}
+		}
+		ids.clear();
+		attributes.clear();
+	}
+
+	private boolean isId(String token) {
+		return (token.length() > 1) || "[]{};,=".indexOf(token) < 0;
+	}
+
+	private boolean isKeyword(String token) {
+		String keyword = token.toLowerCase();
+		return "graph".equals(keyword) || "digraph".equals(keyword)
+				|| "subgraph".equals(keyword) || "node".equals(keyword)
+				|| "edge".equals(keyword) || "strict".equals(keyword);
+	}
+
+	/**
+	 * @return next token (quoted and HTML strings being returned without
+	 *         their delimiters), or <code>null</code> at end of content
+	 */
+	private String nextToken() {
+		int length = content.length();
+		while (pos < length) {
+			char c = content.charAt(pos);
+			if (Character.isWhitespace(c)) {
+				pos++;
+			} else if ((c == '/') && content.startsWith("//", pos)) {
+				skipLine();
+			} else if ((c == '#')
+					&& ((pos == 0) || (content.charAt(pos - 1) == '\n'))) {
+				skipLine();
+			} else if ((c == '/') && content.startsWith("/*", pos)) {
+				int end = content.indexOf("*/", pos + 2);
+				pos = end < 0 ? length : end + 2;
+			} else {
+				break;
+			}
+		}
+		if (pos >= length) {
+			return null;
+		}
+
+		char c = content.charAt(pos);
+		if (c == '"') {
+			StringBuilder sb = new StringBuilder();
+			pos++;
+			while (pos < length) {
+				c = content.charAt(pos++);
+				if (c == '"') {
+					break;
+				}
+				if ((c == '\\') && (pos < length)) {
+					// Escaped quote, or escaped backslash (which does not
+					// escape a following quote)
+					char next = content.charAt(pos);
+					if (next == '"') {
+						c = next;
+						pos++;
+					} else if (next == '\\') {
+						sb.append(c);
+						pos++;
+					}
+				}
+				sb.append(c);
+			}
+			return sb.toString();
+		}
+		if (c == '<') {
+			int start = pos + 1;
+			int level = 0;
+			while (pos < length) {
+				c = content.charAt(pos++);
+				if (c == '<') {
+					level++;
+				} else if ((c == '>') && (--level == 0)) {
+					break;
+				}
+			}
+			return content.substring(start, pos - 1);
+		}
+		if ((c == '-') && (pos + 1 < length)
+				&& ((content.charAt(pos + 1) == '>') || (content
+						.charAt(pos + 1) == '-'))) {
+			pos += 2;
+			return content.substring(pos - 2, pos);
+		}
+		if ("[]{};,=:".indexOf(c) >= 0) {
+			pos++;
+			return String.valueOf(c);
+		}
+		int start = pos;
+		while ((pos < length)
+				&& !Character.isWhitespace(c = content.charAt(pos))
+				&& ("[]{};,=:\"<".indexOf(c) < 0)
+				&& !((c == '-') && (pos + 1 < length) && ((content
+						.charAt(pos + 1) == '>') || (content
+						.charAt(pos + 1) == '-')))) {
+			pos++;
+		}
+		return content.substring(start, pos);
+	}
+
+	private void skipLine() {
+		int end = content.indexOf('\n', pos);
+		pos = end < 0 ? content.length() : end + 1;
+	}
+}
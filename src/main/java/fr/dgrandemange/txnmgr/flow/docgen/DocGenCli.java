@@ -0,0 +1,135 @@
+package fr.dgrandemange.txnmgr.flow.docgen;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+/**
+ * Command line entry point, running the documentation generation without
+ * Maven (i.e. on a configuration taken from a production box)<br>
+ * Run <code>java -jar txnmgrflow-docgen-maven-plugin-x.y.z-cli.jar</code>
+ * without argument for usage<br>
+ *
+ * @author dgrandemange
+ *
+ */
+public class DocGenCli {
+
+	private static final String USAGE = "Usage : java -jar txnmgrflow-docgen-maven-plugin-cli.jar\n"
+			+ "  -config <path>          tx manager config file [REQUIRED]\n"
+			+ "  -output <dir>           output directory, doc is generated under <dir>/txnmgrDocGen/ [REQUIRED]\n"
+			+ "  -classpath <path>       participant classes classpath (path separator delimited)\n"
+			+ "  -dot <path>             GraphViz dot command path (no SVG conversion if omitted)\n"
+			+ "  -concurrency <n>        number of DOT files converted to SVG simultaneously (defaults to 1)\n"
+			+ "  -timeout <seconds>      maximum duration of a DOT file conversion to SVG (no limit if omitted)\n"
+			+ "  -name <name>            doc directory name (defaults to config file name)\n"
+			+ "  -alias <title>          doc main page title (defaults to config file name)\n"
+			+ "  -only <graphs>          comma separated list of graph names to generate ('*' and '?' allowed)\n"
+			+ "  -latencyProfile <path>  participant timing profile (name;p50 ms;p99 ms lines) for the latency overlay\n"
+			+ "  -trafficLogs <path>     tx manager log file (or directory) for the traffic overlay\n"
+			+ "  -noSubflow              disable subflow mode\n"
+			+ "  -svgPostProcessing      minify SVG files and write their gzip compressed copy\n"
+			+ "  -sharedStore            keep DOT and SVG files in a content addressed store shared by all configs\n"
+			+ "  -sharedStoreDir <dir>   shared store directory (defaults to <output dir>/txnmgrDocGen/.store)";
+
+	public static void main(String[] args) {
+		DocGenMojo mojo = new DocGenMojo();
+		mojo.setLog(new SystemStreamLog());
+		mojo.setSubflowMode(true);
+
+		String configPath = null;
+		String outputDirPath = null;
+		String alias = null;
+		List<String> classpathElements = new ArrayList<String>();
+
+		try {
+			for (int i = 0; i < args.length; i++) {
+				String arg = args[i];
+				if ("-noSubflow".equals(arg)) {
+					mojo.setSubflowMode(false);
+					continue;
+				}
+				if ("-svgPostProcessing".equals(arg)) {
+					mojo.setSvgPostProcessing(true);
+					continue;
+				}
+				if ("-sharedStore".equals(arg)) {
+					mojo.setSharedStore(true);
+					continue;
+				}
+				if (i + 1 >= args.length) {
+					throw new IllegalArgumentException(String.format(
+							"missing value for '%s'", arg));
+				}
+				String value = args[++i];
+				if ("-config".equals(arg)) {
+					configPath = value;
+				} else if ("-output".equals(arg)) {
+					outputDirPath = value;
+				} else if ("-classpath".equals(arg) || "-cp".equals(arg)) {
+					for (String element : value.split(File.pathSeparator)) {
+						if (element.length() > 0) {
+							classpathElements.add(element);
+						}
+					}
+				} else if ("-dot".equals(arg)) {
+					mojo.setGraphVizDotCmdPath(value);
+				} else if ("-concurrency".equals(arg)) {
+					mojo.setGraphVizConcurrency(Integer.parseInt(value));
+				} else if ("-timeout".equals(arg)) {
+					mojo.setGraphVizTimeout(Integer.parseInt(value));
+				} else if ("-name".equals(arg)) {
+					mojo.setDocGenDirName(value);
+				} else if ("-alias".equals(arg)) {
+					alias = value;
+				} else if ("-only".equals(arg)) {
+					mojo.setOnly(value);
+				} else if ("-latencyProfile".equals(arg)) {
+					mojo.setLatencyProfilePath(value);
+				} else if ("-trafficLogs".equals(arg)) {
+					mojo.setTrafficLogsPath(value);
+				} else if ("-sharedStoreDir".equals(arg)) {
+					mojo.setSharedStoreDir(value);
+				} else {
+					throw new IllegalArgumentException(String.format(
+							"unknown option '%s'", arg));
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(2);
+		}
+
+		if ((configPath == null) || (outputDirPath == null)) {
+			System.err.println(USAGE);
+			System.exit(2);
+		}
+
+		File outputDir = new File(outputDirPath);
+		if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+			System.err.println(String.format(
+					"unable to create directory '%s'", outputDirPath));
+			System.exit(1);
+		}
+
+		mojo.setTxnmgrConfigPath(configPath);
+		mojo.setBuildDirectory(outputDir.getAbsolutePath());
+		mojo.setAlias(alias != null ? alias : new File(configPath).getName());
+		mojo.setRuntimeClasspathElements(classpathElements);
+
+		try {
+			mojo.execute();
+		} catch (MojoExecutionException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+		} catch (MojoFailureException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,202 @@
+package fr.dgrandemange.txnmgr.flow.docgen;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JDK Flight Recorder events emitted by the documentation generation, so that
+ * docgen shows up in JFR recordings of builds (i.e. with
+ * <code>MAVEN_OPTS=-XX:StartFlightRecording</code>)<br>
+ * Events are only created when the running JVM provides JFR (JDK 11+, 8u262+);
+ * callers hold them as opaque objects, so that event classes are never loaded
+ * otherwise<br>
+ * 
+ * @author dgrandemange
+ * 
+ */
+public final class DocGenEvents {
+
+	private static final String CATEGORY = "Transaction Manager Flow Docgen";
+
+	private static final boolean AVAILABLE = isAvailable();
+
+	private DocGenEvents() {
+	}
+
+	private static boolean isAvailable() {
+		try {
+			Class.forName("jdk.jfr.FlightRecorder");
+			return true;
+		} catch (Throwable t) {
+			return false;
+		}
+	}
+
+	/**
+	 * @param configPath
+	 *            Transaction manager config file path
+	 * @return the begun event, or <code>null</code> if JFR is not available
+	 */
+	public static Object beginConfigParse(String configPath) {
+		if (!AVAILABLE) {
+			return null;
+		}
+		ConfigParseEvent event = new ConfigParseEvent();
+		event.config = configPath;
+		event.begin();
+		return event;
+	}
+
+	public static void endConfigParse(Object event, int graphCount) {
+		if (event == null) {
+			return;
+		}
+		ConfigParseEvent e = (ConfigParseEvent) event;
+		e.graphCount = graphCount;
+		e.commit();
+	}
+
+	/**
+	 * @param graph
+	 *            Graph (DOT file base) name
+	 * @return the begun event, or <code>null</code> if JFR is not available
+	 */
+	public static Object beginDOTEmission(String graph) {
+		if (!AVAILABLE) {
+			return null;
+		}
+		DOTEmissionEvent event = new DOTEmissionEvent();
+		event.graph = graph;
+		event.begin();
+		return event;
+	}
+
+	public static void endDOTEmission(Object event, long dotBytes,
+			boolean changed) {
+		if (event == null) {
+			return;
+		}
+		DOTEmissionEvent e = (DOTEmissionEvent) event;
+		e.dotBytes = dotBytes;
+		e.changed = changed;
+		e.commit();
+	}
+
+	/**
+	 * @param graph
+	 *            Graph (DOT file base) name
+	 * @param dotBytes
+	 *            DOT file size
+	 * @return the begun event, or <code>null</code> if JFR is not available
+	 */
+	public static Object beginSVGConversion(String graph, long dotBytes) {
+		if (!AVAILABLE) {
+			return null;
+		}
+		SVGConversionEvent event = new SVGConversionEvent();
+		event.graph = graph;
+		event.dotBytes = dotBytes;
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * @param svgBytes
+	 *            SVG file size, -1 if no SVG has been produced
+	 */
+	public static void endSVGConversion(Object event, long svgBytes) {
+		if (event == null) {
+			return;
+		}
+		SVGConversionEvent e = (SVGConversionEvent) event;
+		e.svgBytes = svgBytes;
+		e.commit();
+	}
+
+	/**
+	 * @param clazz
+	 *            Participant class name
+	 * @return the begun event, or <code>null</code> if JFR is not available
+	 */
+	public static Object beginAnnotationResolution(String clazz) {
+		if (!AVAILABLE) {
+			return null;
+		}
+		AnnotationResolutionEvent event = new AnnotationResolutionEvent();
+		event.participantClass = clazz;
+		event.begin();
+		return event;
+	}
+
+	public static void endAnnotationResolution(Object event, int transitionCount) {
+		if (event == null) {
+			return;
+		}
+		AnnotationResolutionEvent e = (AnnotationResolutionEvent) event;
+		e.transitionCount = transitionCount;
+		e.commit();
+	}
+
+	@Name("fr.dgrandemange.txnmgr.flow.docgen.ConfigParse")
+	@Label("Config Parse")
+	@Category(CATEGORY)
+	@Description("Transaction manager config conversion to graph(s)")
+	static class ConfigParseEvent extends Event {
+		@Label("Config")
+		String config;
+
+		@Label("Graph Count")
+		int graphCount;
+	}
+
+	@Name("fr.dgrandemange.txnmgr.flow.docgen.DOTEmission")
+	@Label("DOT Emission")
+	@Category(CATEGORY)
+	@Description("Graph export to a DOT file")
+	static class DOTEmissionEvent extends Event {
+		@Label("Graph")
+		String graph;
+
+		@Label("DOT Size")
+		@DataAmount
+		long dotBytes;
+
+		@Label("Changed")
+		@Description("Whether DOT file content has changed")
+		boolean changed;
+	}
+
+	@Name("fr.dgrandemange.txnmgr.flow.docgen.SVGConversion")
+	@Label("SVG Conversion")
+	@Category(CATEGORY)
+	@Description("DOT file conversion to SVG by GraphViz")
+	static class SVGConversionEvent extends Event {
+		@Label("Graph")
+		String graph;
+
+		@Label("DOT Size")
+		@DataAmount
+		long dotBytes;
+
+		@Label("SVG Size")
+		@DataAmount
+		long svgBytes;
+	}
+
+	@Name("fr.dgrandemange.txnmgr.flow.docgen.AnnotationResolution")
+	@Label("Annotation Resolution")
+	@Category(CATEGORY)
+	@Description("Participant class context management annotations resolution")
+	static class AnnotationResolutionEvent extends Event {
+		@Label("Participant Class")
+		String participantClass;
+
+		@Label("Transition Count")
+		@Description("Number of transitions updating context attributes")
+		int transitionCount;
+	}
+}
@@ -1,18 +1,34 @@
 package fr.dgrandemange.txnmgr.flow.docgen;
 
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
@@ -23,8 +39,11 @@ import org.codehaus.classworlds.ClassRealm;
 import org.codehaus.classworlds.ClassWorld;
 import org.codehaus.classworlds.DuplicateRealmException;
 
+import com.developpez.adiguba.shell.BoundedOutputStream;
 import com.developpez.adiguba.shell.ProcessConsumer;
-import com.developpez.adiguba.shell.Shell;
+import com.developpez.adiguba.shell.ProcessPump;
+import com.developpez.adiguba.shell.ProcessTimeoutException;
+import com.developpez.adiguba.shell.ProcessUsage;
 
 import fr.dgrandemange.txnmgrworkflow.model.Graph;
 import fr.dgrandemange.txnmgrworkflow.service.IDOTLabelFactory;
@@ -42,6 +61,8 @@ import fr.dgrandemange.txnmgrworkflow.service.support.TooltipFactoryVelocityImpl
  * 
  * @requiresDependencyResolution runtime
  * 
+ * @threadSafe
+ * 
  * @author dgrandemange
  * @See <a
  *      href="http://books.sonatype.com/mvnref-book/reference/writing-plugins.html"
@@ -90,7 +111,72 @@ public class DocGenMojo extends AbstractMojo {
 	 * @parameter expression="${txnmgr-flow-docgen.graphVizDotCmdPath}" default-value=""
 	 */
 	private String graphVizDotCmdPath;
-	
+
+	/**
+	 * Number of DOT files converted to SVG simultaneously<br>
+	 * 
+	 * @parameter expression="${txnmgr-flow-docgen.graphVizConcurrency}" default-value="1"
+	 */
+	private int graphVizConcurrency = 1;
+
+	/**
+	 * Maximum duration (in seconds) of a DOT file conversion to SVG, dot process being destroyed past this delay<br>
+	 * NB : 0 means no limit
+	 * 
+	 * @parameter expression="${txnmgr-flow-docgen.graphVizTimeout}" default-value="0"
+	 */
+	private int graphVizTimeout;
+
+	/**
+	 * Comma separated list of graph names to (re)generate, others are left untouched<br>
+	 * Wildcards '*' and '?' are supported, main graph is named "root"<br>
+	 *
+	 * @parameter expression="${txnmgr-flow-docgen.only}"
+	 */
+	private String only;
+
+	/**
+	 * Whether generated SVG files are post-processed (minified, repeated presentation attributes shared as CSS classes),
+	 * a gzip compressed copy "&lt;graph&gt;.dot.svg.gz" being written next to each of them<br>
+	 *
+	 * @parameter expression="${txnmgr-flow-docgen.svgPostProcessing}" default-value="false"
+	 */
+	private boolean svgPostProcessing;
+
+	/**
+	 * Participant timing profile (one "participant class or node name;p50 ms;p99 ms" line per participant),
+	 * from which a latency overlay of each graph is computed<br>
+	 *
+	 * @parameter expression="${txnmgr-flow-docgen.latencyProfile}"
+	 */
+	private String latencyProfilePath;
+
+	/**
+	 * jPOS TransactionManager log file (or directory of log files), from which participants and transitions
+	 * traversals are counted, as a traffic overlay of each graph<br>
+	 * Log files are scanned in parallel, one per available processor<br>
+	 *
+	 * @parameter expression="${txnmgr-flow-docgen.trafficLogs}"
+	 */
+	private String trafficLogsPath;
+
+	/**
+	 * Whether DOT and SVG files are kept in a content addressed store shared by all configurations (see
+	 * {@link ContentStore}), each documentation directory hard linking (or copying) its files from it : a subflow
+	 * shared by several configurations is then laid out and stored once<br>
+	 *
+	 * @parameter expression="${txnmgr-flow-docgen.sharedStore}" default-value="false"
+	 */
+	private boolean sharedStore;
+
+	/**
+	 * Shared store directory (defaults to "txnmgrDocGen/.store" under the build directory), i.e. a directory common
+	 * to all modules of a multi-modules project<br>
+	 *
+	 * @parameter expression="${txnmgr-flow-docgen.sharedStoreDir}"
+	 */
+	private String sharedStoreDir;
+
 	/**
 	 * @readonly
 	 * @parameter expression="${project.runtimeClasspathElements}"
@@ -99,12 +185,125 @@ public class DocGenMojo extends AbstractMojo {
 
 	// @formatter:on
 
+	/**
+	 * When set, SVG conversion and site template extraction are skipped if
+	 * already up to date
+	 */
+	private boolean incremental;
+
+	private ContextMgmtInfoPopulatorMojoImpl ctxMgmtInfoPopulator;
+
+	private GraphConverterServiceImpl graphConverterService;
+
+	/**
+	 * Mojo instances are not shared between executions, but plugin classes
+	 * are, when building modules in parallel : Velocity based factories may
+	 * initialize the Velocity singleton engine so they are not created
+	 * concurrently
+	 */
+	private static final Object VELOCITY_INIT_LOCK = new Object();
+
+	/**
+	 * Number of first (and last) bytes of dot command outputs kept for
+	 * logging, so that memory stays bounded whatever dot prints
+	 */
+	private static final int GRAPHVIZ_OUTPUT_CAPTURE_SIZE = 16 * 1024;
+
+	/**
+	 * Name of the file summarizing dot processes resource usage, generated in
+	 * the reports directory
+	 */
+	protected static final String GRAPHVIZ_USAGE_SUMMARY_FILENAME = "graphviz-usage.csv";
+
+	/**
+	 * Name of the execution report file, generated in the reports directory
+	 */
+	protected static final String REPORT_FILENAME = "docgen-report.json";
+
+	/**
+	 * Name of the directory (under the build directory) where execution
+	 * reports are written, one sub directory per documentation directory<br>
+	 * Reports hold measured durations : they are kept out of the generated
+	 * documentation, so that identical inputs give an identical documentation
+	 */
+	protected static final String REPORTS_DIRNAME = "txnmgrDocGen-reports";
+
+	/**
+	 * Timings and sizes of the current (or last) execution
+	 */
+	private DocGenReport report;
+
+	/**
+	 * Reports directory of the current execution
+	 */
+	private File reportDir;
+
+	/**
+	 * Shared store of the current execution, or <code>null</code> if not
+	 * enabled
+	 */
+	private ContentStore contentStore;
+
+	/**
+	 * Graphs of the current execution as parsed from their DOT content, by
+	 * base name, shared by the search index and the overlays
+	 */
+	private Map<String, DOTGraph> dotGraphs;
+
+	/**
+	 * Background threads of the dot processes started by the current
+	 * execution
+	 */
+	private ExecutorService processExecutor;
+
+	private ScheduledExecutorService processWatchdog;
+
 	/*
 	 * (non-Javadoc)
 	 * 
 	 * @see org.apache.maven.plugin.AbstractMojo#execute()
 	 */
 	public void execute() throws MojoExecutionException, MojoFailureException {
+		startProcessThreads();
+		try {
+			generate();
+		} finally {
+			stopProcessThreads();
+		}
+	}
+
+	/**
+	 * Creates the background threads of the dot processes started by this
+	 * execution (outputs copy, timeout watchdog, usage sampling)<br>
+	 * They are owned by this execution, so that concurrent executions (i.e.
+	 * parallel builds) do not depend on each other, and no thread outlives
+	 * the execution, pinning the plugin class loader
+	 */
+	protected void startProcessThreads() {
+		this.processExecutor = ProcessConsumer.newExecutor();
+		this.processWatchdog = ProcessConsumer.newWatchdog();
+	}
+
+	/**
+	 * Shuts down the background threads of the dot processes started by this
+	 * execution
+	 */
+	protected void stopProcessThreads() {
+		if (this.processExecutor != null) {
+			this.processExecutor.shutdownNow();
+			this.processExecutor = null;
+		}
+		if (this.processWatchdog != null) {
+			this.processWatchdog.shutdownNow();
+			this.processWatchdog = null;
+		}
+	}
+
+	/**
+	 * Generates the documentation of the transaction manager configuration
+	 */
+	protected void generate() throws MojoExecutionException,
+			MojoFailureException {
 
 		File txMgrConfigFile = new File(this.txnmgrConfigPath);
 
@@ -122,13 +321,28 @@ public class DocGenMojo extends AbstractMojo {
 			throw new MojoFailureException(errMsg);
 		}
 
+		DocGenReport report = new DocGenReport(this.txnmgrConfigPath);
+		this.report = report;
+
 		// First, convert configuration to graph(s)
-		Map<String, Graph> graphs = new HashMap<String, Graph>();
+		// Graphs are sorted by key, so that outputs do not depend on the order
+		// they were found in
+		Map<String, Graph> graphs = new TreeMap<String, Graph>();
+		long reflectionNanos = getCtxMgmtInfoPopulator().getReflectionNanos();
+		long start = System.nanoTime();
+		Object parseEvent = DocGenEvents.beginConfigParse(this.txnmgrConfigPath);
+		getCtxMgmtInfoPopulator().clearParticipants();
 		try {
 			genGraphsFromConfigFile(txMgrConfigFile, graphs);
 		} catch (MalformedURLException e) {
 			throw new MojoFailureException(e.getMessage());
 		}
+		DocGenEvents.endConfigParse(parseEvent, graphs.size());
+		report.addPhase(DocGenReport.PHASE_CONFIG_PARSING, System.nanoTime()
+				- start);
+		report.addPhase(DocGenReport.PHASE_ANNOTATION_REFLECTION,
+				getCtxMgmtInfoPopulator().getReflectionNanos()
+						- reflectionNanos);
 
 		if (0 == graphs.size()) {
 			getLog().warn(
@@ -173,13 +387,30 @@ public class DocGenMojo extends AbstractMojo {
 			}
 		}
 
-		if ((this.docGenDirName == null)
-				|| (this.docGenDirName.trim().length() == 0)) {
-			this.docGenDirName = txMgrConfigFile.getName();
+		this.contentStore = null;
+		if (this.sharedStore) {
+			this.contentStore = new ContentStore(
+					(this.sharedStoreDir != null)
+							&& (this.sharedStoreDir.trim().length() > 0) ? new File(
+							this.sharedStoreDir) : new File(docGenDir,
+							ContentStore.DIRNAME));
+			getLog().debug(
+					String.format("Shared store : '%s'",
+							this.contentStore.getDir()));
+		}
+
+		String subWorkDirName = this.docGenDirName;
+		if ((subWorkDirName == null) || (subWorkDirName.trim().length() == 0)) {
+			subWorkDirName = txMgrConfigFile.getName();
 		}
 		String subWorkDirPath = docGenDir.getAbsolutePath() + File.separator
-				+ this.docGenDirName;
+				+ subWorkDirName;
 		File subWorkDir = new File(subWorkDirPath);
+		this.reportDir = new File(new File(outputDir, REPORTS_DIRNAME),
+				subWorkDirName);
+		// Reports written by previous versions
+		new File(subWorkDir, REPORT_FILENAME).delete();
+		new File(subWorkDir, GRAPHVIZ_USAGE_SUMMARY_FILENAME).delete();
 		if (!(subWorkDir.exists())) {
 			if (!(subWorkDir.mkdir())) {
 				String errMsg = String.format(
@@ -190,18 +421,27 @@ public class DocGenMojo extends AbstractMojo {
 		}
 
 		// Try to export the graph(s) to DOT format
+		start = System.nanoTime();
+		this.dotGraphs = new TreeMap<String, DOTGraph>();
+		List<Pattern> onlyPatterns = compileGraphNamePatterns(this.only);
 		List<String> dotFiles = new ArrayList<String>();
 		int dotCreatedCount = 0;
+		int dotSkippedCount = 0;
 		for (Entry<String, Graph> entry : graphs.entrySet()) {
 			String key = entry.getKey();
-			String fileName;
+			String baseName;
 			String graphName;
 			if (FacadeImpl.ROOT_KEY.equals(key)) {
 				graphName = this.alias;
-				fileName = "root.dot";
+				baseName = "root";
 			} else {
 				graphName = key;
-				fileName = graphName + ".dot";
+				baseName = graphName;
+			}
+			String fileName = baseName + ".dot";
+			if (!isGraphSelected(baseName, onlyPatterns)) {
+				dotSkippedCount++;
+				continue;
 			}
 			String createdDotFilePath = createDOTFile(entry.getValue(),
 					fileName, graphName, subWorkDir.getAbsolutePath());
@@ -210,16 +450,348 @@ public class DocGenMojo extends AbstractMojo {
 			getLog().info(
 					String.format("DOT file '%s' created", createdDotFilePath));
 		}
+		report.addPhase(DocGenReport.PHASE_DOT_EMISSION, System.nanoTime()
+				- start);
 		getLog().info(String.format("%d DOT file(s) created", dotCreatedCount));
+		if (dotSkippedCount > 0) {
+			getLog().info(
+					String.format("%d graph(s) skipped (not matching '%s')",
+							dotSkippedCount, this.only));
+		}
+		if ((onlyPatterns != null) && (dotCreatedCount == 0)) {
+			getLog().warn(
+					String.format("No graph matches '%s'", this.only));
+		}
+
+		start = System.nanoTime();
+		writeSearchIndex(subWorkDir, graphs.keySet());
+		report.addPhase(DocGenReport.PHASE_SEARCH_INDEX, System.nanoTime()
+				- start);
+
+		start = System.nanoTime();
+		writeCtxAttrLineage(subWorkDir);
+		report.addPhase(DocGenReport.PHASE_CTX_ATTR_LINEAGE,
+				System.nanoTime() - start);
+
+		start = System.nanoTime();
+		writeLatencyOverlay(subWorkDir, graphs.keySet());
+		report.addPhase(DocGenReport.PHASE_LATENCY_OVERLAY, System.nanoTime()
+				- start);
+
+		start = System.nanoTime();
+		writeTrafficOverlay(subWorkDir, graphs.keySet());
+		report.addPhase(DocGenReport.PHASE_TRAFFIC_OVERLAY, System.nanoTime()
+				- start);
+		this.dotGraphs = null;
+
+		if (this.incremental) {
+			List<String> outdatedDotFiles = new ArrayList<String>();
+			for (String dotFilePath : dotFiles) {
+				if (!isSVGUpToDate(dotFilePath)) {
+					outdatedDotFiles.add(dotFilePath);
+				}
+			}
+			getLog().info(
+					String.format("%d SVG file(s) up to date",
+							dotFiles.size() - outdatedDotFiles.size()));
+			dotFiles = outdatedDotFiles;
+		}
 
+		start = System.nanoTime();
 		convertDOT2SVG(subWorkDir, dotFiles);
+		report.addPhase(DocGenReport.PHASE_SVG_CONVERSION, System.nanoTime()
+				- start);
 
+		start = System.nanoTime();
 		try {
-			extractWebSiteTemplate(subWorkDir);
+			if (!(this.incremental && new File(subWorkDir, "index.html")
+					.isFile())) {
+				extractWebSiteTemplate(subWorkDir);
+			}
 		} catch (IOException e) {
 			getLog().error(e.getMessage());
 			throw new MojoFailureException(e.getMessage());
 		}
+		report.addPhase(DocGenReport.PHASE_TEMPLATE_EXTRACTION,
+				System.nanoTime() - start);
+
+		report.end();
+		getLog().info(report.getSummary());
+		File reportFile = getReportFile(REPORT_FILENAME);
+		try {
+			report.write(reportFile);
+		} catch (IOException e) {
+			getLog().warn(
+					String.format("Unable to write '%s' : %s", reportFile,
+							e.getMessage()));
+		}
+	}
+
+	/**
+	 * Writes the search index of all graphs of the configuration (including
+	 * those not regenerated this time, from their existing DOT file)
+	 * 
+	 * @param graphKeys
+	 *            Graph keys, as produced by
+	 *            {@link #genGraphsFromConfigFile(File, Map)}
+	 */
+	protected void writeSearchIndex(File subWorkDir, Set<String> graphKeys) {
+		SearchIndex searchIndex = new SearchIndex();
+		searchIndex.addParticipants(getCtxMgmtInfoPopulator().getParticipants());
+		for (String key : new TreeSet<String>(graphKeys)) {
+			String baseName = getGraphBaseNameByKey(key);
+			DOTGraph dotGraph = getDOTGraph(subWorkDir, baseName);
+			if (dotGraph != null) {
+				searchIndex.addGraph(baseName, dotGraph);
+			}
+		}
+
+		File searchIndexFile = new File(subWorkDir, SearchIndex.FILENAME);
+		try {
+			searchIndex.write(searchIndexFile);
+			getLog().info(
+					String.format("Search index written (%d term(s))",
+							searchIndex.getTermCount()));
+		} catch (IOException e) {
+			getLog().warn(
+					String.format("Unable to write '%s' : %s",
+							searchIndexFile, e.getMessage()));
+		}
+	}
+
+	/**
+	 * Writes the context attributes lineage, as JSON and as a page of the
+	 * documentation site
+	 */
+	protected void writeCtxAttrLineage(File subWorkDir) {
+		CtxAttrLineage lineage = new CtxAttrLineage();
+		lineage.addParticipants(getCtxMgmtInfoPopulator().getParticipants());
+		File lineageFile = new File(subWorkDir, CtxAttrLineage.JSON_FILENAME);
+		try {
+			lineage.write(lineageFile);
+			lineageFile = new File(subWorkDir, CtxAttrLineage.PAGE_FILENAME);
+			lineage.writePage(lineageFile, this.alias != null ? this.alias
+					: new File(this.txnmgrConfigPath).getName());
+			getLog().info(
+					String.format("Context attributes lineage written (%d attribute(s))",
+							lineage.getAttributeCount()));
+		} catch (IOException e) {
+			getLog().warn(
+					String.format("Unable to write '%s' : %s", lineageFile,
+							e.getMessage()));
+		}
+	}
+
+	/**
+	 * Writes the latency overlay of all graphs of the configuration, when a
+	 * timing profile is given (see {@link LatencyOverlay}), otherwise removes
+	 * obsolete ones
+	 */
+	protected void writeLatencyOverlay(File subWorkDir, Set<String> graphKeys) {
+		if ((this.latencyProfilePath == null)
+				|| (this.latencyProfilePath.trim().length() == 0)) {
+			for (String key : graphKeys) {
+				LatencyOverlay.delete(new File(subWorkDir,
+						getGraphBaseNameByKey(key) + ".dot.svg"));
+			}
+			return;
+		}
+
+		try {
+			LatencyOverlay overlay = new LatencyOverlay(
+					LatencyOverlay.readProfile(new File(this.latencyProfilePath)));
+			for (String key : new TreeSet<String>(graphKeys)) {
+				String baseName = getGraphBaseNameByKey(key);
+				DOTGraph dotGraph = getDOTGraph(subWorkDir, baseName);
+				if (dotGraph != null) {
+					overlay.addGraph(baseName, dotGraph);
+				}
+			}
+			overlay.write(subWorkDir);
+
+			LatencyOverlay.Result root = overlay.getResult("root");
+			if (root != null) {
+				getLog().info(
+						String.format(
+								"Latency overlay written : main flow expected latency %.1f ms (p50), worst case %.1f ms (p99)",
+								root.getExpected(), root.getWorst()));
+			}
+		} catch (IOException e) {
+			getLog().warn(
+					String.format("Unable to write latency overlay : %s",
+							e.getMessage()));
+		}
+	}
+
+	/**
+	 * Writes the traffic overlay of all graphs of the configuration, when
+	 * transaction logs are given (see {@link TrafficOverlay}), otherwise
+	 * removes obsolete ones
+	 */
+	protected void writeTrafficOverlay(File subWorkDir, Set<String> graphKeys) {
+		if ((this.trafficLogsPath == null)
+				|| (this.trafficLogsPath.trim().length() == 0)) {
+			for (String key : graphKeys) {
+				TrafficOverlay.delete(new File(subWorkDir,
+						getGraphBaseNameByKey(key) + ".dot.svg"));
+			}
+			return;
+		}
+
+		List<File> logFiles = TrafficOverlay.listLogFiles(new File(
+				this.trafficLogsPath));
+		if (logFiles.isEmpty()) {
+			getLog().warn(
+					String.format("No transaction log found at '%s'",
+							this.trafficLogsPath));
+			return;
+		}
+
+		try {
+			TrafficOverlay.Traffic traffic = TrafficOverlay.scanLogs(logFiles,
+					Runtime.getRuntime().availableProcessors());
+			TrafficOverlay overlay = new TrafficOverlay(traffic);
+			overlay.addParticipants(getCtxMgmtInfoPopulator().getParticipants());
+			for (String key : new TreeSet<String>(graphKeys)) {
+				String baseName = getGraphBaseNameByKey(key);
+				DOTGraph dotGraph = getDOTGraph(subWorkDir, baseName);
+				if (dotGraph != null) {
+					overlay.addGraph(baseName, dotGraph);
+				}
+			}
+			overlay.write(subWorkDir);
+			getLog().info(
+					String.format(
+							"Traffic overlay written : %d transaction(s) found in %d log file(s)",
+							traffic.getTransactions(), logFiles.size()));
+		} catch (IOException e) {
+			getLog().warn(
+					String.format("Unable to write traffic overlay : %s",
+							e.getMessage()));
+		}
+	}
+
+	/**
+	 * @param key
+	 *            Graph key, as produced by
+	 *            {@link #genGraphsFromConfigFile(File, Map)}
+	 * @return graph base name (DOT file name without extension)
+	 */
+	protected String getGraphBaseNameByKey(String key) {
+		return FacadeImpl.ROOT_KEY.equals(key) ? "root" : key;
+	}
+
+	/**
+	 * @return graph as parsed from its DOT content, or <code>null</code> if
+	 *         its DOT file could not be read : graphs emitted by the current
+	 *         execution are parsed once, at emission, the others (not
+	 *         selected) once from their existing DOT file
+	 */
+	private DOTGraph getDOTGraph(File subWorkDir, String baseName) {
+		DOTGraph dotGraph = (this.dotGraphs != null) ? this.dotGraphs
+				.get(baseName) : null;
+		if (dotGraph == null) {
+			String dotContent = readDOTFile(subWorkDir, baseName);
+			if (dotContent == null) {
+				return null;
+			}
+			dotGraph = DOTGraph.parse(dotContent);
+			if (this.dotGraphs != null) {
+				this.dotGraphs.put(baseName, dotGraph);
+			}
+		}
+		return dotGraph;
+	}
+
+	/**
+	 * @return DOT file content of a graph, or <code>null</code> if it could
+	 *         not be read
+	 */
+	protected String readDOTFile(File subWorkDir, String baseName) {
+		File dotFile = new File(subWorkDir, baseName + ".dot");
+		if (!dotFile.isFile()) {
+			return null;
+		}
+		try {
+			return new String(Files.readAllBytes(dotFile.toPath()),
+					Charset.forName("ISO-8859-1"));
+		} catch (IOException e) {
+			getLog().warn(e.getMessage());
+			return null;
+		}
+	}
+
+	public boolean isIncremental() {
+		return incremental;
+	}
+
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+	}
+
+	public String getTxnmgrConfigPath() {
+		return txnmgrConfigPath;
+	}
+
+	public void setTxnmgrConfigPath(String txnmgrConfigPath) {
+		this.txnmgrConfigPath = txnmgrConfigPath;
+	}
+
+	public void setBuildDirectory(String buildDirectory) {
+		this.buildDirectory = buildDirectory;
+	}
+
+	public void setDocGenDirName(String docGenDirName) {
+		this.docGenDirName = docGenDirName;
+	}
+
+	public void setSubflowMode(boolean subflowMode) {
+		this.subflowMode = subflowMode;
+	}
+
+	public void setAlias(String alias) {
+		this.alias = alias;
+	}
+
+	public void setGraphVizDotCmdPath(String graphVizDotCmdPath) {
+		this.graphVizDotCmdPath = graphVizDotCmdPath;
+	}
+
+	public void setGraphVizConcurrency(int graphVizConcurrency) {
+		this.graphVizConcurrency = graphVizConcurrency;
+	}
+
+	public void setGraphVizTimeout(int graphVizTimeout) {
+		this.graphVizTimeout = graphVizTimeout;
+	}
+
+	public void setOnly(String only) {
+		this.only = only;
+	}
+
+	public void setSvgPostProcessing(boolean svgPostProcessing) {
+		this.svgPostProcessing = svgPostProcessing;
+	}
+
+	public void setLatencyProfilePath(String latencyProfilePath) {
+		this.latencyProfilePath = latencyProfilePath;
+	}
+
+	public void setTrafficLogsPath(String trafficLogsPath) {
+		this.trafficLogsPath = trafficLogsPath;
+	}
+
+	public void setSharedStore(boolean sharedStore) {
+		this.sharedStore = sharedStore;
+	}
+
+	public void setSharedStoreDir(String sharedStoreDir) {
+		this.sharedStoreDir = sharedStoreDir;
+	}
+
+	public void setRuntimeClasspathElements(
+			List<String> runtimeClasspathElements) {
+		this.runtimeClasspathElements = runtimeClasspathElements;
 	}
 
 	protected void extractWebSiteTemplate(File subWorkDir) throws IOException {
@@ -253,6 +825,12 @@ public class DocGenMojo extends AbstractMojo {
 				}
 
 				fos.close();
+
+				// Extracted files keep the template timestamps, whatever the
+				// extraction date
+				if (ze.getTime() != -1) {
+					newFile.setLastModified(ze.getTime());
+				}
 			}
 
 			ze = zis.getNextEntry();
@@ -268,36 +846,379 @@ public class DocGenMojo extends AbstractMojo {
 			return;
 		}
 
-		for (String dotFilePath : dotFiles) {
-			ByteArrayOutputStream bosOut = new ByteArrayOutputStream();
-			ByteArrayOutputStream bosErr = new ByteArrayOutputStream();
-			Shell sh = new Shell();
-			ProcessConsumer processConsumer = sh.exec("\"" + graphVizDotCmdPath
-					+ "\"", "-Gcharset=latin1", "-Tsvg", "-O", "\""
-					+ dotFilePath + "\"");
-			try {
-				processConsumer.error(bosErr).output(bosOut).consume();
-			} catch (Exception e) {
-				getLog().error(e.getMessage());
+		int concurrency = Math.min(this.graphVizConcurrency, dotFiles.size());
+
+		// dot processes resource usage, by DOT file path
+		Map<String, ProcessUsage> usages = new TreeMap<String, ProcessUsage>();
+
+		if (concurrency <= 1) {
+			// dot process outputs are drained by the converting thread itself
+			for (String dotFilePath : dotFiles) {
+				ProcessUsage usage = convertDOT2SVG(dotFilePath, null);
+				if (usage != null) {
+					usages.put(dotFilePath, usage);
+				}
+			}
+			writeGraphVizUsageSummary(usages);
+			return;
+		}
+
+		// Conversion threads share a small pump to drain dot processes
+		// outputs, so that thread count does not depend on process count,
+		// and no thread outlives the conversion (i.e. in watch mode)
+		final ProcessPump pump = new ProcessPump(Math.max(1, concurrency / 8));
+		ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+		try {
+			Map<String, Future<ProcessUsage>> conversions = new LinkedHashMap<String, Future<ProcessUsage>>();
+			for (final String dotFilePath : dotFiles) {
+				conversions.put(dotFilePath,
+						executor.submit(new Callable<ProcessUsage>() {
+							public ProcessUsage call() {
+								return convertDOT2SVG(dotFilePath, pump);
+							}
+						}));
+			}
+			for (Entry<String, Future<ProcessUsage>> conversion : conversions
+					.entrySet()) {
+				try {
+					ProcessUsage usage = conversion.getValue().get();
+					if (usage != null) {
+						usages.put(conversion.getKey(), usage);
+					}
+				} catch (ExecutionException e) {
+					getLog().error(e.getCause().getMessage());
+				}
 			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			executor.shutdownNow();
+			pump.close();
+		}
+		writeGraphVizUsageSummary(usages);
+	}
+
+	/**
+	 * @return a report file of the current execution, its directory being
+	 *         created if needed
+	 */
+	protected File getReportFile(String fileName) {
+		this.reportDir.mkdirs();
+		return new File(this.reportDir, fileName);
+	}
+
+	/**
+	 * Writes dot processes resource usage to a CSV summary file, allowing to
+	 * tune conversion concurrency<br>
+	 * Nothing is written when usage could not be measured (i.e. not on Linux)
+	 * 
+	 * @param usages
+	 *            dot processes resource usage, by DOT file path
+	 */
+	protected void writeGraphVizUsageSummary(Map<String, ProcessUsage> usages) {
+		if (usages.isEmpty()) {
+			return;
+		}
 
+		File summaryFile = getReportFile(GRAPHVIZ_USAGE_SUMMARY_FILENAME);
+		try {
+			PrintWriter writer = new PrintWriter(summaryFile, "ISO-8859-1");
 			try {
-				bosOut.close();
-				String infoMsg = new String(bosOut.toString());
-				if ((infoMsg != null) && (infoMsg.trim().length() > 0)) {
-					getLog().info(infoMsg);
+				writer.println("graph;wall_ms;user_ms;sys_ms;peak_rss_kb");
+				for (Entry<String, ProcessUsage> entry : usages.entrySet()) {
+					ProcessUsage usage = entry.getValue();
+					writer.println(String.format("%s;%d;%d;%d;%d",
+							new File(entry.getKey()).getName(),
+							usage.getWallTime(), usage.getUserTime(),
+							usage.getSystemTime(), usage.getPeakRss()));
 				}
-			} catch (IOException e) {
+			} finally {
+				writer.close();
 			}
+		} catch (IOException e) {
+			getLog().warn(
+					String.format("Unable to write '%s' : %s", summaryFile,
+							e.getMessage()));
+		}
+	}
+
+	/**
+	 * Converts a DOT file to SVG, SVG file being created next to the DOT file
+	 * with an additional ".svg" extension<br>
+	 * 
+	 * @param dotFilePath
+	 *            DOT file path
+	 */
+	protected void convertDOT2SVG(String dotFilePath) {
+		convertDOT2SVG(dotFilePath, null);
+	}
+
+	/**
+	 * @param dotFilePath
+	 *            DOT file path
+	 * @param pump
+	 *            Pump draining dot process outputs (may be <code>null</code>)
+	 * @return dot process resource usage, or <code>null</code> if it could
+	 *         not be measured
+	 */
+	protected ProcessUsage convertDOT2SVG(String dotFilePath, ProcessPump pump) {
+		if (this.graphVizDotCmdPath == null) {
+			return null;
+		}
+
+		File svgFile = new File(dotFilePath + ".svg");
+		String digest = null;
+		if (this.contentStore != null) {
 			try {
-				bosErr.close();
-				String errMsg = new String(bosErr.toString());
-				if ((errMsg != null) && (errMsg.trim().length() > 0)) {
-					getLog().error(errMsg);
+				digest = ContentStore.digest(new File(dotFilePath));
+				if (fetchSVG(digest, svgFile)) {
+					writeGraphIndex(svgFile);
+					getLog().info(
+							String.format(
+									"'%s' SVG taken from shared store (%s)",
+									new File(dotFilePath).getName(), digest));
+					return null;
 				}
 			} catch (IOException e) {
+				getLog().warn(e.getMessage());
 			}
 		}
+		// SVG file is replaced rather than overwritten, as it may be a hard
+		// link to the shared store
+		svgFile.delete();
+
+		long start = System.nanoTime();
+		Object svgEvent = DocGenEvents.beginSVGConversion(
+				getGraphBaseName(new File(dotFilePath).getName()), new File(
+						dotFilePath).length());
+		BoundedOutputStream bosOut = new BoundedOutputStream(
+				GRAPHVIZ_OUTPUT_CAPTURE_SIZE, GRAPHVIZ_OUTPUT_CAPTURE_SIZE);
+		BoundedOutputStream bosErr = new BoundedOutputStream(
+				GRAPHVIZ_OUTPUT_CAPTURE_SIZE, GRAPHVIZ_OUTPUT_CAPTURE_SIZE);
+		// dot is started directly (no shell in between), so that usage is
+		// measured on, and timeout destroys, the dot process itself
+		ProcessConsumer processConsumer = new ProcessConsumer(
+				new ProcessBuilder(this.graphVizDotCmdPath,
+						"-Gcharset=latin1", "-Tsvg", "-O", dotFilePath));
+		boolean converted = false;
+		try {
+			converted = processConsumer.executor(this.processExecutor)
+					.watchdog(this.processWatchdog).pump(pump).accounting(true)
+					.timeout(this.graphVizTimeout, TimeUnit.SECONDS)
+					.error(bosErr).output(bosOut).consume() == 0;
+		} catch (ProcessTimeoutException e) {
+			// Do not leave a truncated SVG behind
+			new File(dotFilePath + ".svg").delete();
+			getLog().error(
+					String.format(
+							"DOT file '%s' conversion to SVG timed out : dot process destroyed after %d ms (timeout %d s)",
+							dotFilePath, e.getElapsed(), this.graphVizTimeout));
+		} catch (Exception e) {
+			getLog().error(e.getMessage());
+		}
+
+		String infoMsg = bosOut.toString();
+		if ((infoMsg != null) && (infoMsg.trim().length() > 0)) {
+			getLog().info(infoMsg);
+		}
+		String errMsg = bosErr.toString();
+		if ((errMsg != null) && (errMsg.trim().length() > 0)) {
+			getLog().error(errMsg);
+		}
+
+		ProcessUsage usage = processConsumer.getUsage();
+		postProcessSVG(svgFile);
+		DocGenEvents.endSVGConversion(svgEvent,
+				svgFile.isFile() ? svgFile.length() : -1);
+		if ((digest != null) && converted && svgFile.isFile()) {
+			storeSVG(digest, new File(dotFilePath), svgFile);
+		}
+		writeGraphIndex(svgFile);
+		if ((this.report != null) && svgFile.isFile()) {
+			this.report.addSVG(getGraphBaseName(new File(dotFilePath)
+					.getName()), System.nanoTime() - start, svgFile.length(),
+					usage);
+		}
+		if (usage != null) {
+			getLog().info(
+					String.format(
+							"'%s' converted to SVG : wall %d ms, user %d ms, sys %d ms, peak RSS %d kB",
+							new File(dotFilePath).getName(),
+							usage.getWallTime(), usage.getUserTime(),
+							usage.getSystemTime(), usage.getPeakRss()));
+		}
+		return usage;
+	}
+
+	/**
+	 * @return stored SVG file suffix, post-processed SVG files being stored
+	 *         apart
+	 */
+	protected String getStoredSVGSuffix() {
+		return this.svgPostProcessing ? ".min.svg" : ".svg";
+	}
+
+	/**
+	 * Links a SVG file (and its compressed copy, if post-processed) from the
+	 * shared store
+	 * 
+	 * @param digest
+	 *            Digest of the DOT file content
+	 * @return <code>false</code> if not stored
+	 */
+	protected boolean fetchSVG(String digest, File svgFile)
+			throws IOException {
+		String suffix = getStoredSVGSuffix();
+		String gzipSuffix = suffix + SVGPostProcessor.GZIP_SUFFIX;
+		if (this.svgPostProcessing
+				&& !this.contentStore.getFile(digest, gzipSuffix).isFile()) {
+			return false;
+		}
+		if (!this.contentStore.fetch(digest, suffix, svgFile)) {
+			return false;
+		}
+		if (this.svgPostProcessing) {
+			this.contentStore.fetch(digest, gzipSuffix, new File(svgFile
+					.getPath() + SVGPostProcessor.GZIP_SUFFIX));
+		} else {
+			SVGPostProcessor.delete(svgFile);
+		}
+		return true;
+	}
+
+	/**
+	 * Puts a converted SVG file (with its compressed copy, if post-processed)
+	 * and its DOT file in the shared store
+	 * 
+	 * @param digest
+	 *            Digest of the DOT file content
+	 */
+	protected void storeSVG(String digest, File dotFile, File svgFile) {
+		String suffix = getStoredSVGSuffix();
+		try {
+			this.contentStore.put(digest, ".dot", dotFile);
+			File gzipFile = new File(svgFile.getPath()
+					+ SVGPostProcessor.GZIP_SUFFIX);
+			if (this.svgPostProcessing && gzipFile.isFile()) {
+				this.contentStore.put(digest, suffix
+						+ SVGPostProcessor.GZIP_SUFFIX, gzipFile);
+			}
+			// SVG file is stored last, as it tells whether an artifact is
+			// stored
+			this.contentStore.put(digest, suffix, svgFile);
+		} catch (IOException e) {
+			getLog().warn(
+					String.format("Unable to store '%s' : %s",
+							svgFile.getName(), e.getMessage()));
+		}
+	}
+
+	/**
+	 * Post-processes a SVG file (see {@link SVGPostProcessor}) when enabled,
+	 * otherwise removes an obsolete compressed copy
+	 */
+	protected void postProcessSVG(File svgFile) {
+		if (!this.svgPostProcessing || !svgFile.isFile()) {
+			SVGPostProcessor.delete(svgFile);
+			return;
+		}
+		long size = svgFile.length();
+		try {
+			long processedSize = SVGPostProcessor.process(svgFile);
+			getLog().debug(
+					String.format("'%s' post-processed : %d -> %d bytes",
+							svgFile.getName(), size, processedSize));
+		} catch (IOException e) {
+			SVGPostProcessor.delete(svgFile);
+			getLog().warn(e.getMessage());
+		}
+	}
+
+	/**
+	 * Writes the viewer index of a SVG file (see {@link SVGGraphIndex}), or
+	 * removes an obsolete one when the SVG file is missing
+	 */
+	protected void writeGraphIndex(File svgFile) {
+		if (!svgFile.isFile()) {
+			SVGGraphIndex.delete(svgFile);
+			return;
+		}
+		try {
+			SVGGraphIndex.parse(svgFile).write(svgFile.getParentFile());
+		} catch (IOException e) {
+			SVGGraphIndex.delete(svgFile);
+			getLog().warn(e.getMessage());
+		}
+	}
+
+	/**
+	 * @param fileName
+	 *            DOT file name
+	 * @return graph base name (DOT file name without extension)
+	 */
+	protected String getGraphBaseName(String fileName) {
+		return fileName.endsWith(".dot") ? fileName.substring(0,
+				fileName.length() - ".dot".length()) : fileName;
+	}
+
+	/**
+	 * @param graphNames
+	 *            Comma separated list of graph names, may contain '*' and '?'
+	 *            wildcards
+	 * @return compiled patterns, or <code>null</code> if no graph name is
+	 *         given (meaning all graphs are selected)
+	 */
+	protected List<Pattern> compileGraphNamePatterns(String graphNames) {
+		if ((graphNames == null) || (graphNames.trim().length() == 0)) {
+			return null;
+		}
+
+		List<Pattern> patterns = new ArrayList<Pattern>();
+		for (String graphName : graphNames.split(",")) {
+			graphName = graphName.trim();
+			if (graphName.length() == 0) {
+				continue;
+			}
+			StringBuilder regex = new StringBuilder();
+			StringBuilder literal = new StringBuilder();
+			for (char c : graphName.toCharArray()) {
+				if ((c == '*') || (c == '?')) {
+					if (literal.length() > 0) {
+						regex.append(Pattern.quote(literal.toString()));
+						literal.setLength(0);
+					}
+					regex.append(c == '*' ? ".*" : ".");
+				} else {
+					literal.append(c);
+				}
+			}
+			if (literal.length() > 0) {
+				regex.append(Pattern.quote(literal.toString()));
+			}
+			patterns.add(Pattern.compile(regex.toString()));
+		}
+
+		return patterns.isEmpty() ? null : patterns;
+	}
+
+	/**
+	 * @param baseName
+	 *            Graph base name (DOT file name without extension)
+	 * @param patterns
+	 *            Patterns as returned by
+	 *            {@link #compileGraphNamePatterns(String)}
+	 * @return whether the graph should be generated
+	 */
+	protected boolean isGraphSelected(String baseName, List<Pattern> patterns) {
+		if (patterns == null) {
+			return true;
+		}
+		for (Pattern pattern : patterns) {
+			if (pattern.matcher(baseName).matches()) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	/**
@@ -310,14 +1231,7 @@ public class DocGenMojo extends AbstractMojo {
 		URL url = txMgrConfigFile.toURI().toURL();
 		FacadeImpl jPosWorkflowFacade = new FacadeImpl();
 
-		ClassLoader classLoader = null;
-		try {
-			classLoader = createClassLoader();
-		} catch (Exception e) {
-			getLog().warn(e.getMessage());
-		}
-		ContextMgmtInfoPopulatorMojoImpl ctxMgmtInfoPopulator = new ContextMgmtInfoPopulatorMojoImpl(
-				classLoader, getLog());
+		ContextMgmtInfoPopulatorMojoImpl ctxMgmtInfoPopulator = getCtxMgmtInfoPopulator();
 
 		if (this.subflowMode) {
 			jPosWorkflowFacade.getGraphSubFlowMode(url, ctxMgmtInfoPopulator,
@@ -330,6 +1244,63 @@ public class DocGenMojo extends AbstractMojo {
 	}
 
 	/**
+	 * Context management info populator is kept between executions so that
+	 * project class loader and resolved annotations can be reused<br>
+	 * 
+	 * @return the context management info populator
+	 */
+	protected ContextMgmtInfoPopulatorMojoImpl getCtxMgmtInfoPopulator() {
+		if (this.ctxMgmtInfoPopulator == null) {
+			ClassLoader classLoader = null;
+			long start = System.nanoTime();
+			try {
+				classLoader = createClassLoader();
+			} catch (Exception e) {
+				getLog().warn(e.getMessage());
+			}
+			if (this.report != null) {
+				this.report.addPhase(DocGenReport.PHASE_CLASS_LOADER,
+						System.nanoTime() - start);
+			}
+			this.ctxMgmtInfoPopulator = new ContextMgmtInfoPopulatorMojoImpl(
+					classLoader, getLog());
+		}
+		return this.ctxMgmtInfoPopulator;
+	}
+
+	/**
+	 * Drops project class loader and resolved annotations, so that they get
+	 * recreated on next execution (i.e. when project classes have changed)
+	 */
+	protected void resetClassLoader() {
+		this.ctxMgmtInfoPopulator = null;
+	}
+
+	/**
+	 * Graph converter (and its Velocity based label factories) is kept
+	 * between DOT files creation<br>
+	 * 
+	 * @return the graph converter
+	 */
+	protected GraphConverterServiceImpl getGraphConverterService() {
+		if (this.graphConverterService == null) {
+			synchronized (VELOCITY_INIT_LOCK) {
+				IDOTLabelFactory labelFactory = new LabelFactoryVelocityImpl();
+				IDOTLabelFactory toolTipFactory = new TooltipFactoryVelocityImpl();
+				GraphConverterServiceImpl converter = new GraphConverterServiceImpl();
+				converter.setLabelFactory(labelFactory);
+				converter.setToolTipFactory(toolTipFactory);
+				this.graphConverterService = converter;
+			}
+		}
+		return this.graphConverterService;
+	}
+
+	/**
+	 * DOT file is only (re)written when its content has changed, so its last
+	 * modification date can be relied on to know whether its SVG conversion
+	 * is up to date<br>
+	 * 
 	 * @param graph
 	 *            The graph to export as DOT
 	 * @param graphName
@@ -339,33 +1310,89 @@ public class DocGenMojo extends AbstractMojo {
 	 */
 	protected String createDOTFile(Graph graph, String fileName,
 			String graphName, String outputDir) {
-		IDOTLabelFactory labelFactory = new LabelFactoryVelocityImpl();
-		IDOTLabelFactory toolTipFactory = new TooltipFactoryVelocityImpl();
-		GraphConverterServiceImpl graphConverterService = new GraphConverterServiceImpl();
-		graphConverterService.setLabelFactory(labelFactory);
-		graphConverterService.setToolTipFactory(toolTipFactory);
-		FileOutputStream result = null;
-		PrintWriter pw = null;
+		long start = System.nanoTime();
+		Object dotEvent = DocGenEvents
+				.beginDOTEmission(getGraphBaseName(fileName));
+		GraphConverterServiceImpl graphConverterService = getGraphConverterService();
+		// DOT content is encoded as expected by dot (see "-Gcharset" option
+		// of the SVG conversion), whatever the platform default charset
+		ByteArrayOutputStream dotContent = new ByteArrayOutputStream();
+		PrintWriter pw = new PrintWriter(new OutputStreamWriter(dotContent,
+				Charset.forName("ISO-8859-1")));
+		graphConverterService.convertGraphToDOT(graphName, graph, pw);
+		pw.flush();
+		pw.close();
+		byte[] content = dotContent.toByteArray();
+
+		String saveFilePath = String.format("%s%s%s", outputDir,
+				System.getProperty("file.separator"), fileName);
+		boolean changed;
 		try {
-			String saveFilePath = String.format("%s%s%s", outputDir,
-					System.getProperty("file.separator"), fileName);
-			result = new FileOutputStream(saveFilePath);
-			pw = new PrintWriter(result);
-			graphConverterService.convertGraphToDOT(graphName, graph, pw);
-			pw.flush();
-			pw.close();
-			return saveFilePath;
-		} catch (FileNotFoundException e) {
+			changed = writeIfChanged(new File(saveFilePath), content);
+		} catch (IOException e) {
 			throw new RuntimeException(e);
-		} finally {
-			if (result != null) {
-				try {
-					result.flush();
-					result.close();
-				} catch (Exception e) {
-				}
+		}
+		if (this.dotGraphs != null) {
+			// Parsed from memory, rather than read back from disk by each of
+			// the search index and the overlays
+			this.dotGraphs.put(getGraphBaseName(fileName), DOTGraph
+					.parse(new String(content, Charset.forName("ISO-8859-1"))));
+		}
+		DocGenEvents.endDOTEmission(dotEvent, content.length, changed);
+		if (this.report != null) {
+			this.report.addDOT(getGraphBaseName(fileName), System.nanoTime()
+					- start, content.length, changed);
+		}
+		return saveFilePath;
+	}
+
+	/**
+	 * @param file
+	 *            File to write
+	 * @param content
+	 *            Expected file content
+	 * @return <code>true</code> if file has been (re)written,
+	 *         <code>false</code> if it already had the expected content
+	 * @throws IOException
+	 */
+	protected boolean writeIfChanged(File file, byte[] content)
+			throws IOException {
+		if (file.isFile() && (file.length() == content.length)) {
+			byte[] existing = new byte[content.length];
+			DataInputStream dis = new DataInputStream(new FileInputStream(file));
+			try {
+				dis.readFully(existing);
+			} finally {
+				dis.close();
 			}
+			if (Arrays.equals(existing, content)) {
+				return false;
+			}
+		}
+
+		// File is replaced rather than overwritten, as it may be a hard link
+		// to the shared store
+		file.delete();
+		FileOutputStream fos = new FileOutputStream(file);
+		try {
+			fos.write(content);
+		} finally {
+			fos.close();
 		}
+		return true;
+	}
+
+	/**
+	 * @param dotFilePath
+	 *            DOT file path
+	 * @return whether SVG file converted from this DOT file exists and is
+	 *         more recent than it
+	 */
+	protected boolean isSVGUpToDate(String dotFilePath) {
+		File dotFile = new File(dotFilePath);
+		File svgFile = new File(dotFilePath + ".svg");
+		return svgFile.isFile()
+				&& (svgFile.lastModified() >= dotFile.lastModified());
 	}
 
 	/**
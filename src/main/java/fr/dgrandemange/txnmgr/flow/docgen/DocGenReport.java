@@ -0,0 +1,225 @@
+package fr.dgrandemange.txnmgr.flow.docgen;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import com.developpez.adiguba.shell.ProcessUsage;
+
+/**
+ * Timings and sizes measured during a documentation generation : duration of
+ * each phase, plus DOT emission and SVG conversion duration and size of each
+ * graph<br>
+ * Written as JSON next to the generated documentation, so that trends can be
+ * tracked across builds<br>
+ * Graphs may be recorded concurrently<br>
+ * 
+ * @author dgrandemange
+ * 
+ */
+public class DocGenReport {
+
+	public static final String PHASE_CLASS_LOADER = "classLoader";
+	public static final String PHASE_CONFIG_PARSING = "configParsing";
+	public static final String PHASE_ANNOTATION_REFLECTION = "annotationReflection";
+	public static final String PHASE_DOT_EMISSION = "dotEmission";
+	public static final String PHASE_SEARCH_INDEX = "searchIndex";
+	public static final String PHASE_CTX_ATTR_LINEAGE = "ctxAttrLineage";
+	public static final String PHASE_LATENCY_OVERLAY = "latencyOverlay";
+	public static final String PHASE_TRAFFIC_OVERLAY = "trafficOverlay";
+	public static final String PHASE_SVG_CONVERSION = "svgConversion";
+	public static final String PHASE_TEMPLATE_EXTRACTION = "templateExtraction";
+
+	private final String configPath;
+
+	private final long startTime = System.currentTimeMillis();
+
+	private final long startNanos = System.nanoTime();
+
+	private long totalNanos = -1;
+
+	/**
+	 * Phase durations (in ns), by phase name, in execution order
+	 */
+	private final Map<String, Long> phases = new LinkedHashMap<String, Long>();
+
+	/**
+	 * Graph measures, by graph (DOT file base) name
+	 */
+	private final Map<String, GraphStats> graphs = new TreeMap<String, GraphStats>();
+
+	public DocGenReport(String configPath) {
+		this.configPath = configPath;
+	}
+
+	/**
+	 * @param phase
+	 *            Phase name
+	 * @param nanos
+	 *            Phase duration (in ns), added to previously recorded one
+	 */
+	public synchronized void addPhase(String phase, long nanos) {
+		Long previous = phases.get(phase);
+		phases.put(phase, (previous == null ? 0 : previous) + nanos);
+	}
+
+	public synchronized void addDOT(String graph, long nanos, long size,
+			boolean changed) {
+		GraphStats stats = getGraphStats(graph);
+		stats.dotNanos = nanos;
+		stats.dotSize = size;
+		stats.dotChanged = changed;
+	}
+
+	public synchronized void addSVG(String graph, long nanos, long size,
+			ProcessUsage usage) {
+		GraphStats stats = getGraphStats(graph);
+		stats.svgNanos = nanos;
+		stats.svgSize = size;
+		stats.usage = usage;
+	}
+
+	/**
+	 * Ends the report
+	 */
+	public synchronized void end() {
+		totalNanos = System.nanoTime() - startNanos;
+	}
+
+	private GraphStats getGraphStats(String graph) {
+		GraphStats stats = graphs.get(graph);
+		if (stats == null) {
+			stats = new GraphStats();
+			graphs.put(graph, stats);
+		}
+		return stats;
+	}
+
+	/**
+	 * @return a one line summary, for logging
+	 */
+	public synchronized String getSummary() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("Generated in %d ms (", toMillis(totalNanos)));
+		boolean first = true;
+		for (Entry<String, Long> phase : phases.entrySet()) {
+			if (!first) {
+				sb.append(", ");
+			}
+			first = false;
+			sb.append(String.format("%s %d ms", phase.getKey(),
+					toMillis(phase.getValue())));
+		}
+		sb.append(String.format(
+				") : %d graph(s), %d DOT byte(s), %d SVG(s) converted",
+				graphs.size(), getDOTSize(), getSVGCount()));
+		return sb.toString();
+	}
+
+	/**
+	 * Writes the report as JSON
+	 * 
+	 * @param file
+	 *            Report file
+	 * @throws IOException
+	 */
+	public synchronized void write(File file) throws IOException {
+		JsonWriter json = new JsonWriter(new OutputStreamWriter(
+				new FileOutputStream(file), "UTF-8"));
+		try {
+			json.beginObject();
+			json.name("config").value(configPath);
+			json.name("startTime").value(startTime);
+			json.name("totalTime").value(toMillis(totalNanos));
+
+			json.name("phases").beginObject();
+			for (Entry<String, Long> phase : phases.entrySet()) {
+				json.name(phase.getKey()).value(toMillis(phase.getValue()));
+			}
+			json.endObject();
+
+			long dotNanos = phaseNanos(PHASE_DOT_EMISSION);
+			long svgNanos = phaseNanos(PHASE_SVG_CONVERSION);
+			json.name("throughput").beginObject();
+			json.name("dotBytesPerSecond").value(perSecond(getDOTSize(), dotNanos));
+			json.name("svgPerSecond").value(perSecond(getSVGCount(), svgNanos));
+			json.endObject();
+
+			json.name("graphs").beginArray();
+			for (Entry<String, GraphStats> entry : graphs.entrySet()) {
+				GraphStats stats = entry.getValue();
+				json.beginObject();
+				json.name("name").value(entry.getKey());
+				if (stats.dotSize >= 0) {
+					json.name("dotTime").value(toMillis(stats.dotNanos));
+					json.name("dotSize").value(stats.dotSize);
+					json.name("dotChanged").value(stats.dotChanged);
+				}
+				if (stats.svgSize >= 0) {
+					json.name("svgTime").value(toMillis(stats.svgNanos));
+					json.name("svgSize").value(stats.svgSize);
+				}
+				if (stats.usage != null) {
+					json.name("dotProcess").beginObject();
+					json.name("userTime").value(stats.usage.getUserTime());
+					json.name("systemTime").value(stats.usage.getSystemTime());
+					json.name("peakRss").value(stats.usage.getPeakRss());
+					json.endObject();
+				}
+				json.endObject();
+			}
+			json.endArray();
+			json.endObject();
+		} finally {
+			json.close();
+		}
+	}
+
+	private long phaseNanos(String phase) {
+		Long nanos = phases.get(phase);
+		return nanos == null ? 0 : nanos;
+	}
+
+	private long getDOTSize() {
+		long size = 0;
+		for (GraphStats stats : graphs.values()) {
+			size += Math.max(0, stats.dotSize);
+		}
+		return size;
+	}
+
+	private int getSVGCount() {
+		int count = 0;
+		for (GraphStats stats : graphs.values()) {
+			if (stats.svgSize >= 0) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static long toMillis(long nanos) {
+		return nanos / 1000000L;
+	}
+
+	private static double perSecond(long count, long nanos) {
+		if (nanos <= 0) {
+			return 0;
+		}
+		return Math.round(count * 1e11 / nanos) / 100.0;
+	}
+
+	static class GraphStats {
+		long dotNanos;
+		long dotSize = -1;
+		boolean dotChanged;
+		long svgNanos;
+		long svgSize = -1;
+		ProcessUsage usage;
+	}
+}
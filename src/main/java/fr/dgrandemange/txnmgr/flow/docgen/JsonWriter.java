@@ -0,0 +1,204 @@
+package fr.dgrandemange.txnmgr.flow.docgen;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal streaming JSON writer, used to produce the machine readable files
+ * generated along with the documentation (reports, indexes, ...)<br>
+ * Output is either indented (one member or element per line) or compact<br>
+ * 
+ * @author dgrandemange
+ * 
+ */
+public class JsonWriter implements Closeable {
+
+	private static final String INDENT = "  ";
+
+	private final Writer out;
+
+	private final boolean indent;
+
+	/**
+	 * For each opened object or array, whether it already has a member or
+	 * element
+	 */
+	private final List<Boolean> notEmpty = new ArrayList<Boolean>();
+
+	/**
+	 * Whether a member name has just been written, its value being expected
+	 */
+	private boolean nameWritten = false;
+
+	public JsonWriter(Writer out) {
+		this(out, true);
+	}
+
+	/**
+	 * @param indent
+	 *            whether output should be indented, or kept compact (for
+	 *            files loaded by the documentation viewer)
+	 */
+	public JsonWriter(Writer out, boolean indent) {
+		this.out = out;
+		this.indent = indent;
+	}
+
+	public JsonWriter beginObject() throws IOException {
+		return open('{');
+	}
+
+	public JsonWriter endObject() throws IOException {
+		return close('}');
+	}
+
+	public JsonWriter beginArray() throws IOException {
+		return open('[');
+	}
+
+	public JsonWriter endArray() throws IOException {
+		return close(']');
+	}
+
+	/**
+	 * @param name
+	 *            Name of the object member whose value is written next
+	 */
+	public JsonWriter name(String name) throws IOException {
+		beforeValue();
+		writeString(name);
+		out.write(indent ? ": " : ":");
+		nameWritten = true;
+		return this;
+	}
+
+	public JsonWriter value(String value) throws IOException {
+		if (value == null) {
+			return nullValue();
+		}
+		beforeValue();
+		writeString(value);
+		return this;
+	}
+
+	public JsonWriter value(long value) throws IOException {
+		beforeValue();
+		out.write(Long.toString(value));
+		return this;
+	}
+
+	public JsonWriter value(double value) throws IOException {
+		beforeValue();
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			out.write("null");
+		} else if ((value == Math.rint(value)) && (Math.abs(value) < 1e15)) {
+			out.write(Long.toString((long) value));
+		} else {
+			out.write(Double.toString(value));
+		}
+		return this;
+	}
+
+	public JsonWriter value(boolean value) throws IOException {
+		beforeValue();
+		out.write(value ? "true" : "false");
+		return this;
+	}
+
+	public JsonWriter nullValue() throws IOException {
+		beforeValue();
+		out.write("null");
+		return this;
+	}
+
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	public void close() throws IOException {
+		out.close();
+	}
+
+	private JsonWriter open(char c) throws IOException {
+		beforeValue();
+		out.write(c);
+		notEmpty.add(Boolean.FALSE);
+		return this;
+	}
+
+	private JsonWriter close(char c) throws IOException {
+		boolean hasContent = notEmpty.remove(notEmpty.size() - 1);
+		if (hasContent) {
+			newLine();
+		}
+		out.write(c);
+		if (indent && notEmpty.isEmpty()) {
+			out.write('\n');
+		}
+		return this;
+	}
+
+	/**
+	 * Writes the separator expected before a value (or a member name)
+	 */
+	private void beforeValue() throws IOException {
+		if (nameWritten) {
+			nameWritten = false;
+			return;
+		}
+		int depth = notEmpty.size();
+		if (depth == 0) {
+			return;
+		}
+		if (notEmpty.get(depth - 1)) {
+			out.write(',');
+		} else {
+			notEmpty.set(depth - 1, Boolean.TRUE);
+		}
+		newLine();
+	}
+
+	private void newLine() throws IOException {
+		if (!indent) {
+			return;
+		}
+		out.write('\n');
+		for (int i = 0; i < notEmpty.size(); i++) {
+			out.write(INDENT);
+		}
+	}
+
+	private void writeString(String s) throws IOException {
+		out.write('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch (c) {
+			case '"':
+				out.write("\\\"");
+				break;
+			case '\\':
+				out.write("\\\\");
+				break;
+			case '\n':
+				out.write("\\n");
+				break;
+			case '\r':
+				out.write("\\r");
+				break;
+			case '\t':
+				out.write("\\t");
+				break;
+			default:
+				if ((c < 0x20) || (c == '\u2028') || (c == '\u2029')) {
+					out.write(String.format("\\u%04x", (int) c));
+				} else {
+					out.write(c);
+				}
+			}
+		}
+		out.write('"');
+	}
+}
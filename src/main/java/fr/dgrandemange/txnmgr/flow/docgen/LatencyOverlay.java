@@ -0,0 +1,314 @@
+package fr.dgrandemange.txnmgr.flow.docgen;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Latency overlay of the generated graphs, computed from participant timing
+ * profiles (i.e. as measured by the jPOS TransactionManager profiler)<br>
+ * Profile is a text file, one participant per line : participant class (or
+ * node) name, p50 and p99 latencies in ms, separated by ';', ',' or blanks
+ * ('#' starting comment lines)<br>
+ * For each graph, the expected (by p50) and worst case (by p99) latency
+ * paths are computed, a subflow node weighing the latency of the subflow
+ * graph it links to. Result is written next to each SVG file as
+ * "&lt;graph&gt;.dot.svg.latency.js", shown by the viewer as a heat map
+ * where worst case path edges are highlighted<br>
+ *
+ * @author dgrandemange
+ *
+ */
+public class LatencyOverlay {
+
+	public static final String SUFFIX = ".latency.js";
+
+	private static final int P50 = 0;
+
+	private static final int P99 = 1;
+
+	/**
+	 * p50 and p99 latencies (in ms), by participant class or node name
+	 */
+	private final Map<String, double[]> profile;
+
+	private final Map<String, DOTGraph> graphs = new TreeMap<String, DOTGraph>();
+
+	private final Map<String, Result> results = new HashMap<String, Result>();
+
+	/**
+	 * Graphs whose result is being computed (subflows cycle guard)
+	 */
+	private final Set<String> computing = new HashSet<String>();
+
+	/**
+	 * Latencies of a graph
+	 */
+	public static class Result {
+		/**
+		 * p50 and p99 latencies, by node name (nodes without latency are
+		 * omitted)
+		 */
+		private final Map<String, double[]> nodes = new LinkedHashMap<String, double[]>();
+
+		private final double[] totals = new double[2];
+
+		private final List<List<String>> paths = new ArrayList<List<String>>();
+
+		private final List<String> criticalEdges = new ArrayList<String>();
+
+		/**
+		 * @return expected latency (sum of p50 along the slowest path by p50)
+		 */
+		public double getExpected() {
+			return totals[P50];
+		}
+
+		/**
+		 * @return worst case latency (sum of p99 along the slowest path by
+		 *         p99)
+		 */
+		public double getWorst() {
+			return totals[P99];
+		}
+	}
+
+	public LatencyOverlay(Map<String, double[]> profile) {
+		this.profile = profile;
+	}
+
+	/**
+	 * Reads a timing profile
+	 *
+	 * @return p50 and p99 latencies (in ms), by participant class or node
+	 *         name
+	 */
+	public static Map<String, double[]> readProfile(File file)
+			throws IOException {
+		Map<String, double[]> profile = new HashMap<String, double[]>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(file), "UTF-8"));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if ((line.length() == 0) || line.startsWith("#")) {
+					continue;
+				}
+				String[] fields = line.split("[;,\\s]+");
+				if (fields.length < 3) {
+					continue;
+				}
+				try {
+					profile.put(fields[0], new double[] {
+							Double.parseDouble(fields[1]),
+							Double.parseDouble(fields[2]) });
+				} catch (NumberFormatException e) {
+					// Header line
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return profile;
+	}
+
+	/**
+	 * @param graph
+	 *            Graph base name (DOT file name without extension)
+	 */
+	public void addGraph(String graph, String dotContent) {
+		addGraph(graph, DOTGraph.parse(dotContent));
+	}
+
+	/**
+	 * @param graph
+	 *            Graph base name (DOT file name without extension)
+	 * @param dotGraph
+	 *            Graph as parsed from its DOT content
+	 */
+	void addGraph(String graph, DOTGraph dotGraph) {
+		graphs.put(graph, dotGraph);
+		results.clear();
+	}
+
+	public Result getResult(String graph) {
+		Result result = results.get(graph);
+		if ((result == null) && graphs.containsKey(graph)
+				&& computing.add(graph)) {
+			try {
+				result = compute(graphs.get(graph));
+			} finally {
+				computing.remove(graph);
+			}
+			results.put(graph, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Slowest paths by p50 and by p99, nodes being visited once in
+	 * topological order
+	 */
+	private Result compute(DOTGraph graph) {
+		Result result = new Result();
+		for (DOTGraph.Node node : graph.getNodes()) {
+			double[] latency = getLatency(node);
+			if (latency != null) {
+				result.nodes.put(node.getId(), latency);
+			}
+		}
+
+		List<DOTGraph.Node> sorted = graph.sort();
+		Map<String, List<DOTGraph.Edge>> inEdges = graph.getInEdges();
+		for (int metric = P50; metric <= P99; metric++) {
+			Map<String, Double> distances = new HashMap<String, Double>();
+			Map<String, DOTGraph.Edge> previous = new HashMap<String, DOTGraph.Edge>();
+			String last = null;
+			for (DOTGraph.Node node : sorted) {
+				double distance = 0;
+				for (DOTGraph.Edge edge : inEdges.get(node.getId())) {
+					Double tailDistance = distances.get(edge.getTail());
+					if ((tailDistance != null)
+							&& ((previous.get(node.getId()) == null) || (tailDistance > distance))) {
+						distance = tailDistance;
+						previous.put(node.getId(), edge);
+					}
+				}
+				double[] latency = result.nodes.get(node.getId());
+				distance += latency != null ? latency[metric] : 0;
+				distances.put(node.getId(), distance);
+				if ((last == null) || (distance > distances.get(last))) {
+					last = node.getId();
+				}
+			}
+
+			List<String> path = new ArrayList<String>();
+			List<String> pathEdges = new ArrayList<String>();
+			Set<String> visited = new HashSet<String>();
+			for (String id = last; (id != null) && visited.add(id);) {
+				path.add(id);
+				DOTGraph.Edge edge = previous.get(id);
+				if (edge != null) {
+					pathEdges.add(edge.getName());
+				}
+				id = edge != null ? edge.getTail() : null;
+			}
+			Collections.reverse(path);
+			Collections.reverse(pathEdges);
+			result.totals[metric] = last != null ? distances.get(last) : 0;
+			result.paths.add(path);
+			if (metric == P99) {
+				result.criticalEdges.addAll(pathEdges);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return node own latency (by node name, else by the first of its words
+	 *         found in profile) plus latency of the subflow it links to, or
+	 *         <code>null</code> if unknown
+	 */
+	private double[] getLatency(DOTGraph.Node node) {
+		double[] latency = null;
+		for (String word : node.getWords()) {
+			latency = profile.get(word);
+			if (latency != null) {
+				break;
+			}
+		}
+		Result subflow = node.getLink() != null ? getResult(node.getLink())
+				: null;
+		if (subflow != null) {
+			double p50 = subflow.getExpected();
+			double p99 = subflow.getWorst();
+			if (latency != null) {
+				p50 += latency[P50];
+				p99 += latency[P99];
+			}
+			latency = new double[] { p50, p99 };
+		}
+		return latency;
+	}
+
+	/**
+	 * Writes the overlay of each graph next to its SVG file
+	 */
+	public void write(File dir) throws IOException {
+		for (String graph : graphs.keySet()) {
+			write(graph, getResult(graph), new File(dir, graph + ".dot.svg"
+					+ SUFFIX));
+		}
+	}
+
+	private void write(String graph, Result result, File file)
+			throws IOException {
+		Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		out.write("docgenLoaded(");
+		JsonWriter json = new JsonWriter(out, false);
+		try {
+			json.beginObject();
+			json.name("svg").value(graph + ".dot.svg");
+			json.name("kind").value("latency");
+			json.name("expected").value(round(result.getExpected()));
+			json.name("worst").value(round(result.getWorst()));
+			// [node name, p50, p99]
+			json.name("nodes").beginArray();
+			for (Entry<String, double[]> entry : result.nodes.entrySet()) {
+				json.beginArray();
+				json.value(entry.getKey());
+				json.value(round(entry.getValue()[P50]));
+				json.value(round(entry.getValue()[P99]));
+				json.endArray();
+			}
+			json.endArray();
+			json.name("expectedPath");
+			writeNames(json, result.paths.get(P50));
+			json.name("worstPath");
+			writeNames(json, result.paths.get(P99));
+			json.name("criticalEdges");
+			writeNames(json, result.criticalEdges);
+			json.endObject();
+			json.flush();
+			out.write(");\n");
+		} finally {
+			json.close();
+		}
+	}
+
+	private void writeNames(JsonWriter json, List<String> names)
+			throws IOException {
+		json.beginArray();
+		for (String name : names) {
+			json.value(name);
+		}
+		json.endArray();
+	}
+
+	private static double round(double value) {
+		return Math.round(value * 10) / 10.0;
+	}
+
+	/**
+	 * Removes the overlay of a SVG file
+	 */
+	public static void delete(File svgFile) {
+		new File(svgFile.getPath() + SUFFIX).delete();
+	}
+}
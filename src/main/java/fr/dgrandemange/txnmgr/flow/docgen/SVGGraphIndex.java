@@ -0,0 +1,413 @@
+package fr.dgrandemange.txnmgr.flow.docgen;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Index of the nodes and edges of a GraphViz generated SVG graph<br>
+ * It is written next to the SVG file, so that the documentation viewer
+ * attaches its handlers without scanning the SVG document :
+ * <ul>
+ * <li>"&lt;graph&gt;.dot.svg.index.js" lists node and edge ids, names,
+ * subflow links and bounding boxes (in SVG view box coordinates, used by the
+ * viewer for viewport culling)</li>
+ * <li>"&lt;graph&gt;.dot.svg.tooltips.js" holds tooltips content, only loaded
+ * by the viewer when a first tooltip is shown</li>
+ * </ul>
+ * Both files wrap a compact JSON object in a <code>docgenLoaded()</code> call,
+ * as the viewer loads them through script elements (XMLHttpRequest being
+ * denied on local files)<br>
+ *
+ * @author dgrandemange
+ *
+ */
+public class SVGGraphIndex {
+
+	public static final String INDEX_SUFFIX = ".index.js";
+
+	public static final String TOOLTIPS_SUFFIX = ".tooltips.js";
+
+	private static final String XLINK_NS = "http://www.w3.org/1999/xlink";
+
+	private static final Pattern NUMBER_PATTERN = Pattern
+			.compile("-?(?:\\d+\\.?\\d*|\\.\\d+)(?:[eE][-+]?\\d+)?");
+
+	private static final Pattern SCALE_PATTERN = Pattern
+			.compile("scale\\(([^)]*)\\)");
+
+	private static final Pattern TRANSLATE_PATTERN = Pattern
+			.compile("translate\\(([^)]*)\\)");
+
+	/**
+	 * A node or an edge of the graph
+	 */
+	public static class Item {
+		private final String id;
+
+		private final boolean node;
+
+		private String name;
+
+		private String tooltip;
+
+		private String link;
+
+		private double minX = Double.POSITIVE_INFINITY;
+
+		private double minY = Double.POSITIVE_INFINITY;
+
+		private double maxX = Double.NEGATIVE_INFINITY;
+
+		private double maxY = Double.NEGATIVE_INFINITY;
+
+		Item(String id, boolean node) {
+			this.id = id;
+			this.node = node;
+		}
+
+		void include(double x, double y) {
+			minX = Math.min(minX, x);
+			minY = Math.min(minY, y);
+			maxX = Math.max(maxX, x);
+			maxY = Math.max(maxY, y);
+		}
+
+		public boolean hasBounds() {
+			return minX <= maxX;
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		public boolean isNode() {
+			return node;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return tooltip content (anchor title, defaulting to the item name)
+		 */
+		public String getTooltip() {
+			return tooltip != null ? tooltip : name;
+		}
+
+		/**
+		 * @return linked graph name, or <code>null</code>
+		 */
+		public String getLink() {
+			return link;
+		}
+	}
+
+	private final String svgFileName;
+
+	private final List<Item> items = new ArrayList<Item>();
+
+	/**
+	 * SVG view box (x, y, width, height)
+	 */
+	private double[] viewBox;
+
+	/**
+	 * Graph group transform (scale, then translation), mapping shapes
+	 * coordinates to view box coordinates
+	 */
+	private double scaleX = 1, scaleY = 1, translateX = 0, translateY = 0;
+
+	private SVGGraphIndex(String svgFileName) {
+		this.svgFileName = svgFileName;
+	}
+
+	/**
+	 * Parses a GraphViz generated SVG file (streaming, the SVG document is
+	 * never fully loaded in memory)
+	 */
+	public static SVGGraphIndex parse(File svgFile) throws IOException {
+		SVGGraphIndex index = new SVGGraphIndex(svgFile.getName());
+
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		// GraphViz SVG refers to the external SVG 1.1 DTD
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES,
+				Boolean.FALSE);
+
+		InputStream is = new FileInputStream(svgFile);
+		try {
+			XMLStreamReader reader = factory.createXMLStreamReader(is);
+			try {
+				index.read(reader);
+			} finally {
+				reader.close();
+			}
+		} catch (XMLStreamException e) {
+			throw new IOException(String.format("unable to parse '%s' : %s",
+					svgFile.getPath(), e.getMessage()), e);
+		} finally {
+			is.close();
+		}
+		return index;
+	}
+
+	private void read(XMLStreamReader reader) throws XMLStreamException {
+		int depth = 0;
+		Item item = null;
+		int itemDepth = -1;
+		StringBuilder title = null;
+
+		while (reader.hasNext()) {
+			switch (reader.next()) {
+			case XMLStreamConstants.START_ELEMENT:
+				depth++;
+				String localName = reader.getLocalName();
+				if (item == null) {
+					if ("svg".equals(localName) && (depth == 1)) {
+						readViewBox(reader.getAttributeValue(null, "viewBox"));
+					} else if ("g".equals(localName)
+							&& "graph".equals(reader.getAttributeValue(null,
+									"class"))) {
+						readTransform(reader.getAttributeValue(null,
+								"transform"));
+					} else if ("g".equals(localName)) {
+						String clazz = reader.getAttributeValue(null, "class");
+						String id = reader.getAttributeValue(null, "id");
+						if ((id != null)
+								&& ("node".equals(clazz) || "edge"
+										.equals(clazz))) {
+							item = new Item(id, "node".equals(clazz));
+							itemDepth = depth;
+						}
+					}
+				} else if ("title".equals(localName) && (item.name == null)) {
+					title = new StringBuilder();
+				} else if ("a".equals(localName) && (item.link == null)
+						&& (item.tooltip == null)) {
+					item.link = reader.getAttributeValue(XLINK_NS, "href");
+					item.tooltip = reader.getAttributeValue(XLINK_NS, "title");
+				} else {
+					readBounds(reader, localName, item);
+				}
+				break;
+
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+			case XMLStreamConstants.SPACE:
+				if (title != null) {
+					title.append(reader.getText());
+				}
+				break;
+
+			case XMLStreamConstants.ENTITY_REFERENCE:
+				if (title != null) {
+					title.append('&').append(reader.getLocalName()).append(';');
+				}
+				break;
+
+			case XMLStreamConstants.END_ELEMENT:
+				if (title != null) {
+					item.name = title.toString();
+					title = null;
+				} else if ((item != null) && (depth == itemDepth)) {
+					items.add(item);
+					item = null;
+				}
+				depth--;
+				break;
+
+			default:
+				break;
+			}
+		}
+	}
+
+	private void readViewBox(String value) {
+		double[] numbers = parseNumbers(value);
+		if (numbers.length == 4) {
+			viewBox = numbers;
+		}
+	}
+
+	/**
+	 * GraphViz graph group transform looks like
+	 * "scale(1 1) rotate(0) translate(4 112)"
+	 */
+	private void readTransform(String value) {
+		if (value == null) {
+			return;
+		}
+		Matcher matcher = SCALE_PATTERN.matcher(value);
+		if (matcher.find()) {
+			double[] numbers = parseNumbers(matcher.group(1));
+			if (numbers.length > 0) {
+				scaleX = numbers[0];
+				scaleY = numbers.length > 1 ? numbers[1] : numbers[0];
+			}
+		}
+		matcher = TRANSLATE_PATTERN.matcher(value);
+		if (matcher.find()) {
+			double[] numbers = parseNumbers(matcher.group(1));
+			if (numbers.length > 0) {
+				translateX = numbers[0];
+				translateY = numbers.length > 1 ? numbers[1] : 0;
+			}
+		}
+	}
+
+	/**
+	 * Extends an item bounding box with the coordinates of one of its shapes
+	 */
+	private void readBounds(XMLStreamReader reader, String localName,
+			Item item) {
+		if ("ellipse".equals(localName)) {
+			double cx = parseNumber(reader.getAttributeValue(null, "cx"));
+			double cy = parseNumber(reader.getAttributeValue(null, "cy"));
+			double rx = parseNumber(reader.getAttributeValue(null, "rx"));
+			double ry = parseNumber(reader.getAttributeValue(null, "ry"));
+			include(item, cx - rx, cy - ry);
+			include(item, cx + rx, cy + ry);
+		} else if ("rect".equals(localName) || "image".equals(localName)) {
+			double x = parseNumber(reader.getAttributeValue(null, "x"));
+			double y = parseNumber(reader.getAttributeValue(null, "y"));
+			include(item, x, y);
+			include(item,
+					x + parseNumber(reader.getAttributeValue(null, "width")),
+					y + parseNumber(reader.getAttributeValue(null, "height")));
+		} else if ("polygon".equals(localName)
+				|| "polyline".equals(localName) || "path".equals(localName)) {
+			// GraphViz only uses absolute coordinates
+			double[] numbers = parseNumbers(reader.getAttributeValue(null,
+					"path".equals(localName) ? "d" : "points"));
+			for (int i = 0; i + 1 < numbers.length; i += 2) {
+				include(item, numbers[i], numbers[i + 1]);
+			}
+		} else if ("text".equals(localName)) {
+			include(item, parseNumber(reader.getAttributeValue(null, "x")),
+					parseNumber(reader.getAttributeValue(null, "y")));
+		}
+	}
+
+	private void include(Item item, double x, double y) {
+		if (Double.isNaN(x) || Double.isNaN(y)) {
+			return;
+		}
+		item.include(scaleX * (x + translateX), scaleY * (y + translateY));
+	}
+
+	private static double parseNumber(String value) {
+		double[] numbers = parseNumbers(value);
+		return numbers.length > 0 ? numbers[0] : Double.NaN;
+	}
+
+	private static double[] parseNumbers(String value) {
+		if (value == null) {
+			return new double[0];
+		}
+		List<Double> numbers = new ArrayList<Double>();
+		Matcher matcher = NUMBER_PATTERN.matcher(value);
+		while (matcher.find()) {
+			numbers.add(Double.valueOf(matcher.group()));
+		}
+		double[] result = new double[numbers.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = numbers.get(i).doubleValue();
+		}
+		return result;
+	}
+
+	public List<Item> getItems() {
+		return items;
+	}
+
+	/**
+	 * Writes the index and tooltips files next to the SVG file
+	 */
+	public void write(File dir) throws IOException {
+		Writer out = open(new File(dir, svgFileName + INDEX_SUFFIX));
+		JsonWriter json = new JsonWriter(out, false);
+		try {
+			json.beginObject();
+			json.name("svg").value(svgFileName);
+			if (viewBox != null) {
+				json.name("viewBox").beginArray();
+				for (double value : viewBox) {
+					json.value(value);
+				}
+				json.endArray();
+			}
+			// [id, "n"ode or "e"dge, name, link, x, y, width, height]
+			json.name("items").beginArray();
+			for (Item item : items) {
+				json.beginArray();
+				json.value(item.id);
+				json.value(item.node ? "n" : "e");
+				json.value(item.name != null ? item.name : "");
+				json.value(item.link != null ? item.link : "");
+				if (item.hasBounds()) {
+					json.value((long) Math.floor(item.minX));
+					json.value((long) Math.floor(item.minY));
+					json.value((long) Math.ceil(item.maxX - Math.floor(item.minX)));
+					json.value((long) Math.ceil(item.maxY - Math.floor(item.minY)));
+				}
+				json.endArray();
+			}
+			json.endArray();
+			json.endObject();
+			json.flush();
+			out.write(");\n");
+		} finally {
+			json.close();
+		}
+
+		out = open(new File(dir, svgFileName + TOOLTIPS_SUFFIX));
+		json = new JsonWriter(out, false);
+		try {
+			json.beginObject();
+			json.name("svg").value(svgFileName);
+			json.name("tooltips").beginObject();
+			for (Item item : items) {
+				String tooltip = item.getTooltip();
+				if ((tooltip != null) && (tooltip.length() > 0)) {
+					json.name(item.id).value(tooltip);
+				}
+			}
+			json.endObject();
+			json.endObject();
+			json.flush();
+			out.write(");\n");
+		} finally {
+			json.close();
+		}
+	}
+
+	private Writer open(File file) throws IOException {
+		Writer out = new OutputStreamWriter(new FileOutputStream(file),
+				"UTF-8");
+		out.write("docgenLoaded(");
+		return out;
+	}
+
+	/**
+	 * Removes the index and tooltips files of a SVG file
+	 */
+	public static void delete(File svgFile) {
+		new File(svgFile.getPath() + INDEX_SUFFIX).delete();
+		new File(svgFile.getPath() + TOOLTIPS_SUFFIX).delete();
+	}
+}
@@ -0,0 +1,391 @@
+package fr.dgrandemange.txnmgr.flow.docgen;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Optional post-processing of GraphViz generated SVG files, reducing the
+ * generated site size :
+ * <ul>
+ * <li>comments, DOCTYPE and whitespace between elements are removed</li>
+ * <li>trailing zeros of coordinates are removed ("27.00" becomes "27")</li>
+ * <li>presentation attributes (fill, stroke, font-family, ...) repeated on
+ * every shape are replaced by shared CSS classes, declared once in a
+ * <code>&lt;style&gt;</code> element</li>
+ * <li>a gzip compressed copy ("&lt;graph&gt;.dot.svg.gz") is written next to
+ * the SVG file, for HTTP servers serving precompressed content</li>
+ * </ul>
+ * SVG is streamed (StAX), ids, classes and titles (<code>xlink:title</code>
+ * included) used by the viewer are kept untouched<br>
+ *
+ * @author dgrandemange
+ *
+ */
+public class SVGPostProcessor {
+
+	public static final String GZIP_SUFFIX = ".gz";
+
+	private static final String CLASS_PREFIX = "st";
+
+	/**
+	 * Presentation attributes moved to CSS classes
+	 */
+	private static final Set<String> STYLE_ATTRIBUTES = new HashSet<String>(
+			Arrays.asList("fill", "fill-opacity", "stroke", "stroke-width",
+					"stroke-opacity", "stroke-dasharray", "font-family",
+					"font-size", "font-weight", "font-style", "text-anchor"));
+
+	/**
+	 * CSS properties requiring a unit
+	 */
+	private static final Set<String> LENGTH_ATTRIBUTES = new HashSet<String>(
+			Arrays.asList("font-size", "stroke-width"));
+
+	/**
+	 * Attributes holding coordinates
+	 */
+	private static final Set<String> GEOMETRY_ATTRIBUTES = new HashSet<String>(
+			Arrays.asList("x", "y", "cx", "cy", "rx", "ry", "width", "height",
+					"points", "d", "transform", "viewBox"));
+
+	private static final Pattern TRAILING_ZEROS_PATTERN = Pattern
+			.compile("(\\d+)\\.(\\d*?)0+(?!\\d)");
+
+	private static final Pattern NUMBER_PATTERN = Pattern
+			.compile("-?\\d+(?:\\.\\d+)?");
+
+	/**
+	 * CSS declarations, by class name (in order of appearance)
+	 */
+	private final Map<String, String> classes = new LinkedHashMap<String, String>();
+
+	private Writer out;
+
+	/**
+	 * Whether the current start tag is still open (i.e. not yet closed by
+	 * '&gt;' or '/&gt;')
+	 */
+	private boolean tagOpen;
+
+	/**
+	 * Depth of the current <code>&lt;text&gt;</code> element, whitespace
+	 * being significant inside
+	 */
+	private int textDepth;
+
+	private int depth;
+
+	/**
+	 * Post-processes a SVG file in place, then writes its gzip compressed
+	 * copy
+	 *
+	 * @return post-processed SVG file size
+	 */
+	public static long process(File svgFile) throws IOException {
+		File tmpFile = new File(svgFile.getPath() + ".tmp");
+		try {
+			new SVGPostProcessor().minify(svgFile, tmpFile);
+			Files.move(tmpFile.toPath(), svgFile.toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			tmpFile.delete();
+		}
+		gzip(svgFile, new File(svgFile.getPath() + GZIP_SUFFIX));
+		return svgFile.length();
+	}
+
+	/**
+	 * Removes the gzip compressed copy of a SVG file
+	 */
+	public static void delete(File svgFile) {
+		new File(svgFile.getPath() + GZIP_SUFFIX).delete();
+	}
+
+	private void minify(File src, File dest) throws IOException {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES,
+				Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+
+		InputStream is = new FileInputStream(src);
+		try {
+			out = new BufferedWriter(new OutputStreamWriter(
+					new FileOutputStream(dest), "UTF-8"));
+			try {
+				XMLStreamReader reader = factory.createXMLStreamReader(is);
+				try {
+					out.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>");
+					copy(reader);
+				} finally {
+					reader.close();
+				}
+			} finally {
+				out.close();
+			}
+		} catch (XMLStreamException e) {
+			throw new IOException(String.format("unable to parse '%s' : %s",
+					src.getPath(), e.getMessage()), e);
+		} finally {
+			is.close();
+		}
+	}
+
+	private void copy(XMLStreamReader reader) throws XMLStreamException,
+			IOException {
+		while (reader.hasNext()) {
+			switch (reader.next()) {
+			case XMLStreamConstants.START_ELEMENT:
+				closeTag();
+				depth++;
+				if ("text".equals(reader.getLocalName()) && (textDepth == 0)) {
+					textDepth = depth;
+				}
+				writeStartElement(reader);
+				break;
+
+			case XMLStreamConstants.END_ELEMENT:
+				if (depth == 1) {
+					// Shared classes are declared last, CSS applying whatever
+					// the style element position
+					closeTag();
+					writeStyle();
+				}
+				if (tagOpen) {
+					out.write("/>");
+					tagOpen = false;
+				} else {
+					out.write("</");
+					out.write(qualifiedName(reader.getPrefix(),
+							reader.getLocalName()));
+					out.write('>');
+				}
+				if (depth == textDepth) {
+					textDepth = 0;
+				}
+				depth--;
+				break;
+
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+			case XMLStreamConstants.SPACE:
+				if ((textDepth == 0) && reader.isWhiteSpace()) {
+					break;
+				}
+				closeTag();
+				escape(reader.getText(), false);
+				break;
+
+			case XMLStreamConstants.ENTITY_REFERENCE:
+				closeTag();
+				out.write('&');
+				out.write(reader.getLocalName());
+				out.write(';');
+				break;
+
+			default:
+				// Comments, DOCTYPE and processing instructions are dropped
+				break;
+			}
+		}
+	}
+
+	private void writeStartElement(XMLStreamReader reader) throws IOException {
+		out.write('<');
+		out.write(qualifiedName(reader.getPrefix(), reader.getLocalName()));
+
+		for (int i = 0; i < reader.getNamespaceCount(); i++) {
+			String prefix = reader.getNamespacePrefix(i);
+			writeAttribute(qualifiedName("xmlns", prefix), reader
+					.getNamespaceURI(i));
+		}
+
+		String clazz = null;
+		Map<String, String> styles = new TreeMap<String, String>();
+		for (int i = 0; i < reader.getAttributeCount(); i++) {
+			String prefix = reader.getAttributePrefix(i);
+			String name = reader.getAttributeLocalName(i);
+			String value = reader.getAttributeValue(i);
+			boolean unprefixed = (prefix == null) || (prefix.length() == 0);
+			if (unprefixed && "class".equals(name)) {
+				clazz = value;
+			} else if (unprefixed && STYLE_ATTRIBUTES.contains(name)) {
+				styles.put(name, value);
+			} else {
+				if (unprefixed && GEOMETRY_ATTRIBUTES.contains(name)) {
+					value = trimZeros(value);
+				}
+				writeAttribute(qualifiedName(prefix, name), value);
+			}
+		}
+
+		if (clazz != null) {
+			// Classes are used by the viewer : presentation attributes of
+			// such elements are kept as is
+			for (Entry<String, String> style : styles.entrySet()) {
+				writeAttribute(style.getKey(), style.getValue());
+			}
+			writeAttribute("class", clazz);
+		} else if (!styles.isEmpty()) {
+			writeAttribute("class", getClassName(styles));
+		}
+		tagOpen = true;
+	}
+
+	/**
+	 * @return shared class name for a set of presentation attributes
+	 */
+	private String getClassName(Map<String, String> styles) {
+		StringBuilder declaration = new StringBuilder();
+		for (Entry<String, String> style : styles.entrySet()) {
+			if (declaration.length() > 0) {
+				declaration.append(';');
+			}
+			String value = style.getValue();
+			if (LENGTH_ATTRIBUTES.contains(style.getKey())
+					&& NUMBER_PATTERN.matcher(value).matches()) {
+				value = trimZeros(value) + "px";
+			}
+			declaration.append(style.getKey()).append(':').append(value);
+		}
+		String key = declaration.toString();
+		String className = classes.get(key);
+		if (className == null) {
+			className = CLASS_PREFIX + classes.size();
+			classes.put(key, className);
+		}
+		return className;
+	}
+
+	private void writeStyle() throws IOException {
+		if (classes.isEmpty()) {
+			return;
+		}
+		out.write("<style type=\"text/css\">");
+		for (Entry<String, String> entry : classes.entrySet()) {
+			out.write('.');
+			out.write(entry.getValue());
+			out.write('{');
+			escape(entry.getKey(), false);
+			out.write('}');
+		}
+		out.write("</style>");
+	}
+
+	private void closeTag() throws IOException {
+		if (tagOpen) {
+			out.write('>');
+			tagOpen = false;
+		}
+	}
+
+	private void writeAttribute(String name, String value) throws IOException {
+		out.write(' ');
+		out.write(name);
+		out.write("=\"");
+		escape(value, true);
+		out.write('"');
+	}
+
+	private void escape(String value, boolean attribute) throws IOException {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '&':
+				out.write("&amp;");
+				break;
+			case '<':
+				out.write("&lt;");
+				break;
+			case '>':
+				out.write("&gt;");
+				break;
+			case '"':
+				out.write(attribute ? "&quot;" : "\"");
+				break;
+			case '\n':
+				out.write(attribute ? "&#10;" : "\n");
+				break;
+			case '\r':
+				out.write("&#13;");
+				break;
+			case '\t':
+				out.write(attribute ? "&#9;" : "\t");
+				break;
+			default:
+				out.write(c);
+			}
+		}
+	}
+
+	private static String qualifiedName(String prefix, String localName) {
+		if ((prefix == null) || (prefix.length() == 0)) {
+			return localName;
+		}
+		if ((localName == null) || (localName.length() == 0)) {
+			// Default namespace declaration
+			return prefix;
+		}
+		return prefix + ":" + localName;
+	}
+
+	static String trimZeros(String value) {
+		Matcher matcher = TRAILING_ZEROS_PATTERN.matcher(value);
+		if (!matcher.find()) {
+			return value;
+		}
+		StringBuffer sb = new StringBuffer();
+		do {
+			String decimals = matcher.group(2);
+			matcher.appendReplacement(sb, matcher.group(1)
+					+ (decimals.length() > 0 ? "." + decimals : ""));
+		} while (matcher.find());
+		matcher.appendTail(sb);
+		return sb.toString();
+	}
+
+	private static void gzip(File src, File dest) throws IOException {
+		// Compressed copy is replaced rather than overwritten, as it may be a
+		// hard link to the shared store (see ContentStore)
+		dest.delete();
+		InputStream is = new FileInputStream(src);
+		try {
+			OutputStream os = new GZIPOutputStream(new FileOutputStream(dest));
+			try {
+				byte[] buffer = new byte[8192];
+				int len;
+				while ((len = is.read(buffer)) > 0) {
+					os.write(buffer, 0, len);
+				}
+			} finally {
+				os.close();
+			}
+		} finally {
+			is.close();
+		}
+	}
+}
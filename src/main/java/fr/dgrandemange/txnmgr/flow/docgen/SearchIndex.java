@@ -0,0 +1,229 @@
+package fr.dgrandemange.txnmgr.flow.docgen;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+
+import fr.dgrandemange.ctxmgmt.annotation.UpdateContextRule;
+import fr.dgrandemange.txnmgrworkflow.model.ParticipantInfo;
+import fr.dgrandemange.txnmgrworkflow.model.SubFlowInfo;
+
+/**
+ * Inverted index of the generated documentation, written as a single file
+ * ("search-index.js") queried by the viewer search box<br>
+ * It maps participant classes, group names, transition names and context
+ * attribute names to the graphs and nodes (or edges) mentioning them :
+ * <ul>
+ * <li>terms and their kind come from the participants model (see
+ * {@link ContextMgmtInfoPopulatorMojoImpl#getParticipants()}), transition
+ * names also from edge labels</li>
+ * <li>occurrences are found in each graph nodes and edges, as parsed once
+ * from its DOT content (see {@link DOTGraph}), nodes and edges being named
+ * as in the SVG titles (i.e. "a-&gt;b" for an edge)</li>
+ * </ul>
+ * Index is a compact JSON object wrapped in a <code>docgenLoaded()</code>
+ * call, as are the graph indexes (see {@link SVGGraphIndex})<br>
+ *
+ * @author dgrandemange
+ *
+ */
+public class SearchIndex {
+
+	public static final String FILENAME = "search-index.js";
+
+	public static final char KIND_CLASS = 'c';
+
+	public static final char KIND_GROUP = 'g';
+
+	public static final char KIND_TRANSITION = 't';
+
+	public static final char KIND_ATTRIBUTE = 'a';
+
+	/**
+	 * Known terms kind
+	 */
+	private final Map<String, Character> kinds = new HashMap<String, Character>();
+
+	/**
+	 * Graph base names, in order of addition
+	 */
+	private final List<String> graphs = new ArrayList<String>();
+
+	/**
+	 * Occurrences of each term : graph index and node (or edge) name pairs
+	 */
+	private final Map<String, Set<Occurrence>> occurrences = new TreeMap<String, Set<Occurrence>>();
+
+	private static class Occurrence {
+		private final int graph;
+
+		private final String name;
+
+		Occurrence(int graph, String name) {
+			this.graph = graph;
+			this.name = name;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * graph + name.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Occurrence)) {
+				return false;
+			}
+			Occurrence other = (Occurrence) obj;
+			return (graph == other.graph) && name.equals(other.name);
+		}
+	}
+
+	/**
+	 * Registers the terms of the participants model : groups, participant
+	 * classes, and transitions and context attributes of their update rules
+	 */
+	public void addParticipants(
+			Map<String, List<ParticipantInfo>> participantsByGroup) {
+		for (Entry<String, List<ParticipantInfo>> entry : participantsByGroup
+				.entrySet()) {
+			addTerm(entry.getKey(), KIND_GROUP);
+			for (ParticipantInfo participant : entry.getValue()) {
+				if (participant instanceof SubFlowInfo) {
+					continue;
+				}
+				addTerm(participant.getClazz(), KIND_CLASS);
+				Map<String, String[]> updCtxAttrByTransId = participant
+						.getUpdCtxAttrByTransId();
+				if (updCtxAttrByTransId == null) {
+					continue;
+				}
+				for (Entry<String, String[]> rule : updCtxAttrByTransId
+						.entrySet()) {
+					if (!UpdateContextRule.DEFAULT_ID.equals(rule.getKey())) {
+						addTerm(rule.getKey(), KIND_TRANSITION);
+					}
+					if (rule.getValue() != null) {
+						for (String attrName : rule.getValue()) {
+							addTerm(attrName, KIND_ATTRIBUTE);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private void addTerm(String term, char kind) {
+		if ((term != null) && (term.length() > 0) && !kinds.containsKey(term)) {
+			kinds.put(term, kind);
+		}
+	}
+
+	/**
+	 * Indexes a graph DOT content
+	 *
+	 * @param graph
+	 *            Graph base name (DOT file name without extension)
+	 */
+	public void addGraph(String graph, String dotContent) {
+		addGraph(graph, DOTGraph.parse(dotContent));
+	}
+
+	/**
+	 * Records the known terms of a graph nodes and edges, transition names
+	 * found in its edge labels included
+	 *
+	 * @param graph
+	 *            Graph base name (DOT file name without extension)
+	 * @param dotGraph
+	 *            Graph as parsed from its DOT content
+	 */
+	void addGraph(String graph, DOTGraph dotGraph) {
+		int graphIndex = graphs.size();
+		graphs.add(graph);
+		if (kinds.containsKey(graph)) {
+			addOccurrence(graph, graphIndex, "");
+		}
+		for (DOTGraph.Edge edge : dotGraph.getEdges()) {
+			String transition = edge.getLabel();
+			if ((transition != null) && DOTParser.isWord(transition)) {
+				addTerm(transition, KIND_TRANSITION);
+			}
+		}
+		for (DOTGraph.Node node : dotGraph.getNodes()) {
+			indexWords(DOTParser.words(node.getId()), graphIndex,
+					node.getId());
+			indexWords(node.getWords(), graphIndex, node.getId());
+		}
+		for (DOTGraph.Edge edge : dotGraph.getEdges()) {
+			indexWords(edge.getWords(), graphIndex, edge.getName());
+		}
+	}
+
+	private void addOccurrence(String term, int graphIndex, String name) {
+		Set<Occurrence> termOccurrences = occurrences.get(term);
+		if (termOccurrences == null) {
+			termOccurrences = new LinkedHashSet<Occurrence>();
+			occurrences.put(term, termOccurrences);
+		}
+		termOccurrences.add(new Occurrence(graphIndex, name));
+	}
+
+	/**
+	 * Records the known terms among a node or edge words
+	 */
+	private void indexWords(List<String> words, int graphIndex, String name) {
+		for (String term : words) {
+			if (kinds.containsKey(term)) {
+				addOccurrence(term, graphIndex, name);
+			}
+		}
+	}
+
+	public int getTermCount() {
+		return occurrences.size();
+	}
+
+	public void write(File file) throws IOException {
+		Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		out.write("docgenLoaded(");
+		JsonWriter json = new JsonWriter(out, false);
+		try {
+			json.beginObject();
+			json.name("search").value("search-index");
+			json.name("graphs").beginArray();
+			for (String graph : graphs) {
+				json.value(graph);
+			}
+			json.endArray();
+			// [term, kind, graph index, node name, graph index, node name...]
+			json.name("terms").beginArray();
+			for (Entry<String, Set<Occurrence>> entry : occurrences.entrySet()) {
+				json.beginArray();
+				json.value(entry.getKey());
+				json.value(String.valueOf(kinds.get(entry.getKey())));
+				for (Occurrence occurrence : entry.getValue()) {
+					json.value(occurrence.graph);
+					json.value(occurrence.name);
+				}
+				json.endArray();
+			}
+			json.endArray();
+			json.endObject();
+			json.flush();
+			out.write(");\n");
+		} finally {
+			json.close();
+		}
+	}
+}
@@ -0,0 +1,309 @@
+package fr.dgrandemange.txnmgr.flow.docgen;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Transaction manager flow documentation preview task<br>
+ * DOT files are generated, then the documentation is served by a local HTTP
+ * server, until Maven is stopped<br>
+ * A DOT file is only converted to SVG the first time the browser asks for it,
+ * subflows it links to are then converted in background<br>
+ *
+ * @goal serve
+ *
+ * @requiresDependencyResolution runtime
+ *
+ * @threadSafe
+ *
+ * @author dgrandemange
+ */
+public class ServeMojo extends DocGenMojo {
+	// @formatter:off
+
+	/**
+	 * Local HTTP server port<br>
+	 *
+	 * @parameter expression="${txnmgr-flow-docgen.port}" default-value="8080"
+	 */
+	private int port;
+
+	/**
+	 * Number of threads converting DOT files to SVG in background<br>
+	 *
+	 * @parameter expression="${txnmgr-flow-docgen.prefetchThreads}" default-value="2"
+	 */
+	private int prefetchThreads;
+
+	// @formatter:on
+
+	/**
+	 * Links to other graphs in a DOT file
+	 */
+	private static final Pattern LINK_PATTERN = Pattern
+			.compile("(?:URL|href)\\s*=\\s*\"([^\"]+)\"");
+
+	private static final Map<String, String> CONTENT_TYPES = new HashMap<String, String>();
+	static {
+		CONTENT_TYPES.put("html", "text/html; charset=UTF-8");
+		CONTENT_TYPES.put("css", "text/css");
+		CONTENT_TYPES.put("js", "application/javascript");
+		CONTENT_TYPES.put("json", "application/json");
+		CONTENT_TYPES.put("svg", "image/svg+xml");
+		CONTENT_TYPES.put("png", "image/png");
+		CONTENT_TYPES.put("gif", "image/gif");
+		CONTENT_TYPES.put("dot", "text/plain");
+	}
+
+	private File siteDir;
+
+	/**
+	 * Pending or done conversions, by DOT file path
+	 */
+	private final ConcurrentMap<String, Future<Void>> conversions = new ConcurrentHashMap<String, Future<Void>>();
+
+	private ExecutorService prefetchExecutor;
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see fr.dgrandemange.txnmgr.flow.docgen.DocGenMojo#execute()
+	 */
+	@Override
+	public void execute() throws MojoExecutionException, MojoFailureException {
+		super.execute();
+		if (siteDir == null) {
+			return;
+		}
+
+		prefetchExecutor = Executors.newFixedThreadPool(
+				Math.max(1, prefetchThreads), new ThreadFactory() {
+					private final AtomicInteger count = new AtomicInteger();
+
+					public Thread newThread(Runnable runnable) {
+						Thread t = new Thread(runnable, "txnmgr-docgen-prefetch-"
+								+ count.incrementAndGet());
+						t.setDaemon(true);
+						return t;
+					}
+				});
+
+		HttpServer server;
+		try {
+			server = HttpServer.create(new InetSocketAddress("localhost",
+					port), 0);
+		} catch (IOException e) {
+			prefetchExecutor.shutdownNow();
+			throw new MojoExecutionException(e.getMessage(), e);
+		}
+		server.createContext("/", new SiteHandler());
+		ExecutorService serverExecutor = Executors.newCachedThreadPool();
+		server.setExecutor(serverExecutor);
+		// DOT files are converted on demand, after generation
+		startProcessThreads();
+		try {
+			server.start();
+
+			// Main graph will be asked first
+			prefetch(new File(siteDir, "root.dot"));
+
+			getLog().info(
+					String.format(
+							"Documentation available at http://localhost:%d/index.html, press Ctrl-C to stop",
+							port));
+			Thread.sleep(Long.MAX_VALUE);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			server.stop(0);
+			serverExecutor.shutdownNow();
+			prefetchExecutor.shutdownNow();
+			stopProcessThreads();
+		}
+	}
+
+	/**
+	 * DOT files are only recorded here, conversion occurs on demand
+	 */
+	@Override
+	protected void convertDOT2SVG(File subWorkDir, List<String> dotFiles) {
+		this.siteDir = subWorkDir;
+		for (String dotFilePath : dotFiles) {
+			if (!isSVGUpToDate(dotFilePath)) {
+				// Forget previous conversion of an obsolete SVG
+				conversions.remove(dotFilePath);
+			}
+		}
+	}
+
+	/**
+	 * Converts a DOT file to SVG once, concurrent callers waiting for the
+	 * same conversion
+	 */
+	protected void ensureConverted(final File dotFile)
+			throws InterruptedException {
+		final String dotFilePath = dotFile.getAbsolutePath();
+		Future<Void> conversion = conversions.get(dotFilePath);
+		if (conversion == null) {
+			FutureTask<Void> task = new FutureTask<Void>(new Callable<Void>() {
+				public Void call() throws Exception {
+					if (!isSVGUpToDate(dotFilePath)) {
+						long start = System.currentTimeMillis();
+						convertDOT2SVG(dotFilePath);
+						getLog().info(
+								String.format("'%s' converted in %d ms",
+										dotFile.getName(),
+										System.currentTimeMillis() - start));
+					}
+					return null;
+				}
+			});
+			conversion = conversions.putIfAbsent(dotFilePath, task);
+			if (conversion == null) {
+				conversion = task;
+				task.run();
+				prefetchLinkedGraphs(dotFile);
+			}
+		}
+
+		try {
+			conversion.get();
+		} catch (ExecutionException e) {
+			getLog().error(e.getCause().getMessage());
+		}
+	}
+
+	/**
+	 * Converts, in background, the graphs a DOT file links to
+	 */
+	protected void prefetchLinkedGraphs(File dotFile) {
+		String content;
+		try {
+			content = new String(Files.readAllBytes(dotFile.toPath()),
+					Charset.forName("ISO-8859-1"));
+		} catch (IOException e) {
+			return;
+		}
+
+		Matcher matcher = LINK_PATTERN.matcher(content);
+		while (matcher.find()) {
+			String link = matcher.group(1);
+			if (link.contains("/") || link.contains("\\")) {
+				continue;
+			}
+			File linkedDotFile = new File(dotFile.getParentFile(), link
+					+ ".dot");
+			if (linkedDotFile.isFile()
+					&& !conversions.containsKey(linkedDotFile
+							.getAbsolutePath())) {
+				prefetch(linkedDotFile);
+			}
+		}
+	}
+
+	protected void prefetch(final File dotFile) {
+		if (!dotFile.isFile()) {
+			return;
+		}
+		prefetchExecutor.submit(new Callable<Void>() {
+			public Void call() throws Exception {
+				ensureConverted(dotFile);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Serves site files, converting SVG files on first request
+	 */
+	class SiteHandler implements HttpHandler {
+
+		public void handle(HttpExchange exchange) throws IOException {
+			try {
+				String path = exchange.getRequestURI().getPath();
+				if ("/".equals(path)) {
+					path = "/index.html";
+				}
+
+				File file = new File(siteDir, path).getCanonicalFile();
+				if (!file.getPath().startsWith(
+						siteDir.getCanonicalPath() + File.separator)) {
+					exchange.sendResponseHeaders(403, -1);
+					return;
+				}
+
+				if (file.getName().endsWith(".dot.svg")) {
+					String dotFilePath = file.getPath();
+					File dotFile = new File(dotFilePath.substring(0,
+							dotFilePath.length() - ".svg".length()));
+					if (dotFile.isFile()) {
+						try {
+							ensureConverted(dotFile);
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							exchange.sendResponseHeaders(503, -1);
+							return;
+						}
+					}
+				}
+
+				if (!file.isFile()) {
+					exchange.sendResponseHeaders(404, -1);
+					return;
+				}
+
+				String name = file.getName();
+				String contentType = CONTENT_TYPES.get(name.substring(name
+						.lastIndexOf('.') + 1));
+				if (contentType != null) {
+					exchange.getResponseHeaders().set("Content-Type",
+							contentType);
+				}
+				exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+				exchange.sendResponseHeaders(200, file.length());
+
+				OutputStream os = exchange.getResponseBody();
+				InputStream is = new FileInputStream(file);
+				try {
+					byte[] buffer = new byte[8192];
+					int len;
+					while ((len = is.read(buffer)) > 0) {
+						os.write(buffer, 0, len);
+					}
+				} finally {
+					is.close();
+				}
+			} finally {
+				exchange.close();
+			}
+		}
+	}
+}
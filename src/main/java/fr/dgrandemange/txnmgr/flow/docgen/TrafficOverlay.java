@@ -0,0 +1,586 @@
+package fr.dgrandemange.txnmgr.flow.docgen;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import fr.dgrandemange.txnmgrworkflow.model.ParticipantInfo;
+import fr.dgrandemange.txnmgrworkflow.model.SubFlowInfo;
+
+/**
+ * Traffic overlay of the generated graphs, mined from jPOS
+ * TransactionManager logs<br>
+ * Each <code>&lt;log&gt;</code> event is a transaction, whose
+ * "prepare: &lt;participant&gt;" lines give the participants it went through,
+ * in order. Log files are memory mapped and scanned in parallel (one file per
+ * thread), only counters being kept in memory :
+ * <ul>
+ * <li>traversals of each participant class</li>
+ * <li>traversals of each pair of consecutive participants (a transition)</li>
+ * </ul>
+ * Nodes are then matched to participant classes (a subflow node to the
+ * participants its graph starts and ends with), an edge counting the
+ * traversals from its tail participants to its head participants. Edges
+ * from a start node (or to an end node) get the remaining traffic of their
+ * head (or tail).<br>
+ * NB : counters being kept by participant class, nodes of a class used in
+ * several places of the flow show the same traffic<br>
+ * Result is written next to each SVG file as
+ * "&lt;graph&gt;.dot.svg.traffic.js", shown by the viewer as edges thickness
+ * and colour<br>
+ *
+ * @author dgrandemange
+ *
+ */
+public class TrafficOverlay {
+
+	public static final String SUFFIX = ".traffic.js";
+
+	/**
+	 * Size of the mapped regions of a log file
+	 */
+	private static final int MAP_SIZE = 64 * 1024 * 1024;
+
+	/**
+	 * Longer log lines are truncated
+	 */
+	private static final int MAX_LINE_LENGTH = 4096;
+
+	private static final Charset LOG_CHARSET = Charset.forName("ISO-8859-1");
+
+	private static final Pattern PREPARE_PATTERN = Pattern
+			.compile("^prepare:\\s+([\\w.$]+)");
+
+	/**
+	 * Traversal counters, as mined from transaction logs
+	 */
+	public static class Traffic {
+		private long transactions;
+
+		/**
+		 * Traversals by participant class
+		 */
+		private final Map<String, long[]> participants = new HashMap<String, long[]>();
+
+		/**
+		 * Traversals by participant class, then by next participant class
+		 */
+		private final Map<String, Map<String, long[]>> steps = new HashMap<String, Map<String, long[]>>();
+
+		public long getTransactions() {
+			return transactions;
+		}
+
+		public long getParticipant(String clazz) {
+			long[] count = participants.get(clazz);
+			return count != null ? count[0] : 0;
+		}
+
+		public long getStep(String from, String to) {
+			Map<String, long[]> nextSteps = steps.get(from);
+			long[] count = nextSteps != null ? nextSteps.get(to) : null;
+			return count != null ? count[0] : 0;
+		}
+
+		private void addParticipant(String clazz, String previous) {
+			increment(participants, clazz, 1);
+			if (previous != null) {
+				Map<String, long[]> nextSteps = steps.get(previous);
+				if (nextSteps == null) {
+					nextSteps = new HashMap<String, long[]>();
+					steps.put(previous, nextSteps);
+				}
+				increment(nextSteps, clazz, 1);
+			}
+		}
+
+		private void merge(Traffic other) {
+			transactions += other.transactions;
+			for (Entry<String, long[]> entry : other.participants.entrySet()) {
+				increment(participants, entry.getKey(), entry.getValue()[0]);
+			}
+			for (Entry<String, Map<String, long[]>> entry : other.steps
+					.entrySet()) {
+				Map<String, long[]> nextSteps = steps.get(entry.getKey());
+				if (nextSteps == null) {
+					steps.put(entry.getKey(), entry.getValue());
+					continue;
+				}
+				for (Entry<String, long[]> step : entry.getValue().entrySet()) {
+					increment(nextSteps, step.getKey(), step.getValue()[0]);
+				}
+			}
+		}
+
+		private static void increment(Map<String, long[]> counts, String key,
+				long value) {
+			long[] count = counts.get(key);
+			if (count == null) {
+				counts.put(key, new long[] { value });
+			} else {
+				count[0] += value;
+			}
+		}
+	}
+
+	private final Traffic traffic;
+
+	/**
+	 * Known participant classes (from the participants model, and from the
+	 * logs)
+	 */
+	private final Set<String> classes = new HashSet<String>();
+
+	private final Map<String, DOTGraph> graphs = new TreeMap<String, DOTGraph>();
+
+	public TrafficOverlay(Traffic traffic) {
+		this.traffic = traffic;
+		classes.addAll(traffic.participants.keySet());
+	}
+
+	/**
+	 * Registers the participant classes of the participants model, so that
+	 * nodes of participants never traversed are recognized as such
+	 */
+	public void addParticipants(
+			Map<String, List<ParticipantInfo>> participantsByGroup) {
+		for (List<ParticipantInfo> participants : participantsByGroup.values()) {
+			for (ParticipantInfo participant : participants) {
+				if (!(participant instanceof SubFlowInfo)
+						&& (participant.getClazz() != null)) {
+					classes.add(participant.getClazz());
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param graph
+	 *            Graph base name (DOT file name without extension)
+	 */
+	public void addGraph(String graph, String dotContent) {
+		addGraph(graph, DOTGraph.parse(dotContent));
+	}
+
+	/**
+	 * @param graph
+	 *            Graph base name (DOT file name without extension)
+	 * @param dotGraph
+	 *            Graph as parsed from its DOT content
+	 */
+	void addGraph(String graph, DOTGraph dotGraph) {
+		graphs.put(graph, dotGraph);
+	}
+
+	/**
+	 * Scans transaction log files, in parallel
+	 *
+	 * @param concurrency
+	 *            Maximum number of files scanned simultaneously
+	 */
+	public static Traffic scanLogs(List<File> logFiles, int concurrency)
+			throws IOException {
+		Traffic traffic = new Traffic();
+		concurrency = Math.max(1, Math.min(concurrency, logFiles.size()));
+		if (concurrency == 1) {
+			for (File logFile : logFiles) {
+				traffic.merge(scanLog(logFile));
+			}
+			return traffic;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+		try {
+			List<Future<Traffic>> scans = new ArrayList<Future<Traffic>>();
+			for (final File logFile : logFiles) {
+				scans.add(executor.submit(new Callable<Traffic>() {
+					public Traffic call() throws IOException {
+						return scanLog(logFile);
+					}
+				}));
+			}
+			for (Future<Traffic> scan : scans) {
+				try {
+					traffic.merge(scan.get());
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof IOException) {
+						throw (IOException) e.getCause();
+					}
+					throw new IOException(e.getCause());
+				}
+			}
+		} catch (InterruptedException e) {
+			// Partial counts would be mistaken for actual traffic
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(
+					"transaction logs scan interrupted");
+		} finally {
+			executor.shutdownNow();
+		}
+		return traffic;
+	}
+
+	/**
+	 * Scans a transaction log file, line by line, through memory mapped
+	 * regions
+	 */
+	static Traffic scanLog(File logFile) throws IOException {
+		LogScanner scanner = new LogScanner();
+		RandomAccessFile file = new RandomAccessFile(logFile, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			long size = channel.size();
+			for (long position = 0; position < size; position += MAP_SIZE) {
+				MappedByteBuffer buffer = channel.map(
+						FileChannel.MapMode.READ_ONLY, position,
+						Math.min(MAP_SIZE, size - position));
+				while (buffer.hasRemaining()) {
+					scanner.read(buffer.get());
+				}
+			}
+			scanner.endLine();
+			scanner.endTransaction();
+		} catch (IOException e) {
+			throw new IOException(String.format("unable to read '%s' : %s",
+					logFile.getPath(), e.getMessage()), e);
+		} finally {
+			file.close();
+		}
+		return scanner.traffic;
+	}
+
+	/**
+	 * Transaction log lines parser, keeping only the current line and the
+	 * previous participant of the current transaction
+	 */
+	private static class LogScanner {
+		private final Traffic traffic = new Traffic();
+
+		private final byte[] line = new byte[MAX_LINE_LENGTH];
+
+		private int length;
+
+		/**
+		 * Previous participant of the current transaction, or
+		 * <code>null</code>
+		 */
+		private String previous;
+
+		private boolean prepared;
+
+		void read(byte b) {
+			if (b == '\n') {
+				endLine();
+			} else if ((length > 0) || ((b != ' ') && (b != '\t'))) {
+				// Leading blanks are skipped
+				if (length < line.length) {
+					line[length++] = b;
+				}
+			}
+		}
+
+		void endLine() {
+			if (length == 0) {
+				return;
+			}
+			// Only lines starting with "<log", "</log" or "prepare:" are
+			// decoded
+			byte first = line[0];
+			if ((first == '<') || (first == 'p')) {
+				String text = new String(line, 0, length, LOG_CHARSET);
+				if (text.startsWith("<log") || text.startsWith("</log")) {
+					endTransaction();
+				} else {
+					Matcher matcher = PREPARE_PATTERN.matcher(text);
+					if (matcher.find()) {
+						String clazz = matcher.group(1);
+						traffic.addParticipant(clazz, previous);
+						previous = clazz;
+						prepared = true;
+					}
+				}
+			}
+			length = 0;
+		}
+
+		void endTransaction() {
+			if (prepared) {
+				traffic.transactions++;
+			}
+			previous = null;
+			prepared = false;
+		}
+	}
+
+	/**
+	 * @return traversals of a node, or -1 if it matches no participant
+	 */
+	long getNodeTraffic(String graph, DOTGraph.Node node) {
+		Set<String> entries = getEntries(graph, node, new HashSet<String>());
+		if (entries.isEmpty()) {
+			return -1;
+		}
+		long count = 0;
+		for (String clazz : entries) {
+			count += traffic.getParticipant(clazz);
+		}
+		return count;
+	}
+
+	/**
+	 * @return traversals of an edge, or -1 if unknown
+	 */
+	long getEdgeTraffic(String graph, DOTGraph.Edge edge,
+			Map<String, List<DOTGraph.Edge>> outEdges,
+			Map<String, List<DOTGraph.Edge>> inEdges) {
+		DOTGraph dotGraph = graphs.get(graph);
+		Set<String> tails = getExits(graph, dotGraph.getNode(edge.getTail()),
+				new HashSet<String>());
+		Set<String> heads = getEntries(graph,
+				dotGraph.getNode(edge.getHead()), new HashSet<String>());
+		if (!tails.isEmpty() && !heads.isEmpty()) {
+			return countSteps(tails, heads);
+		}
+
+		long count;
+		if (!heads.isEmpty()) {
+			// From a start node : head traffic not coming from its other
+			// predecessors
+			count = countParticipants(heads);
+			for (DOTGraph.Edge other : inEdges.get(edge.getHead())) {
+				if (other != edge) {
+					count -= countSteps(
+							getExits(graph, dotGraph.getNode(other.getTail()),
+									new HashSet<String>()), heads);
+				}
+			}
+		} else if (!tails.isEmpty()) {
+			// To an end node : tail traffic not going to its other successors
+			count = countParticipants(tails);
+			for (DOTGraph.Edge other : outEdges.get(edge.getTail())) {
+				if (other != edge) {
+					count -= countSteps(tails, getEntries(graph, dotGraph
+							.getNode(other.getHead()), new HashSet<String>()));
+				}
+			}
+		} else {
+			return -1;
+		}
+		return Math.max(0, count);
+	}
+
+	private long countParticipants(Set<String> participants) {
+		long count = 0;
+		for (String clazz : participants) {
+			count += traffic.getParticipant(clazz);
+		}
+		return count;
+	}
+
+	private long countSteps(Set<String> from, Set<String> to) {
+		long count = 0;
+		for (String tail : from) {
+			for (String head : to) {
+				count += traffic.getStep(tail, head);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return participant class of a node (first of its words being a known
+	 *         class), or <code>null</code>
+	 */
+	private String getClass(DOTGraph.Node node) {
+		for (String word : node.getWords()) {
+			if (classes.contains(word)) {
+				return word;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return participant classes a transaction goes through when entering a
+	 *         node (its class, or the first participants of the subflow it
+	 *         links to)
+	 */
+	private Set<String> getEntries(String graph, DOTGraph.Node node,
+			Set<String> visited) {
+		Set<String> entries = new LinkedHashSet<String>();
+		String clazz = getClass(node);
+		if (clazz != null) {
+			entries.add(clazz);
+		} else if ((node.getLink() != null) && graphs.containsKey(node.getLink())
+				&& visited.add(node.getLink())) {
+			String subflow = node.getLink();
+			DOTGraph subflowGraph = graphs.get(subflow);
+			Map<String, List<DOTGraph.Edge>> inEdges = subflowGraph
+					.getInEdges();
+			for (DOTGraph.Node first : subflowGraph.getNodes()) {
+				if (!inEdges.get(first.getId()).isEmpty()) {
+					continue;
+				}
+				Set<String> firstEntries = getEntries(subflow, first, visited);
+				if (firstEntries.isEmpty()) {
+					// Start node
+					for (DOTGraph.Edge edge : subflowGraph.getOutEdges().get(
+							first.getId())) {
+						firstEntries.addAll(getEntries(subflow, subflowGraph
+								.getNode(edge.getHead()), visited));
+					}
+				}
+				entries.addAll(firstEntries);
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * @return participant classes a transaction goes through when leaving a
+	 *         node (its class, or the last participants of the subflow it
+	 *         links to)
+	 */
+	private Set<String> getExits(String graph, DOTGraph.Node node,
+			Set<String> visited) {
+		Set<String> exits = new LinkedHashSet<String>();
+		String clazz = getClass(node);
+		if (clazz != null) {
+			exits.add(clazz);
+		} else if ((node.getLink() != null) && graphs.containsKey(node.getLink())
+				&& visited.add(node.getLink())) {
+			String subflow = node.getLink();
+			DOTGraph subflowGraph = graphs.get(subflow);
+			Map<String, List<DOTGraph.Edge>> outEdges = subflowGraph
+					.getOutEdges();
+			for (DOTGraph.Node last : subflowGraph.getNodes()) {
+				if (!outEdges.get(last.getId()).isEmpty()) {
+					continue;
+				}
+				Set<String> lastExits = getExits(subflow, last, visited);
+				if (lastExits.isEmpty()) {
+					// End node
+					for (DOTGraph.Edge edge : subflowGraph.getInEdges().get(
+							last.getId())) {
+						lastExits.addAll(getExits(subflow, subflowGraph
+								.getNode(edge.getTail()), visited));
+					}
+				}
+				exits.addAll(lastExits);
+			}
+		}
+		return exits;
+	}
+
+	/**
+	 * Writes the overlay of each graph next to its SVG file
+	 */
+	public void write(File dir) throws IOException {
+		for (String graph : graphs.keySet()) {
+			write(graph, new File(dir, graph + ".dot.svg" + SUFFIX));
+		}
+	}
+
+	private void write(String graph, File file) throws IOException {
+		DOTGraph dotGraph = graphs.get(graph);
+		Map<String, List<DOTGraph.Edge>> outEdges = dotGraph.getOutEdges();
+		Map<String, List<DOTGraph.Edge>> inEdges = dotGraph.getInEdges();
+
+		Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		out.write("docgenLoaded(");
+		JsonWriter json = new JsonWriter(out, false);
+		try {
+			json.beginObject();
+			json.name("svg").value(graph + ".dot.svg");
+			json.name("kind").value("traffic");
+			json.name("transactions").value(traffic.getTransactions());
+			// [node name, traversals]
+			json.name("nodes").beginArray();
+			for (DOTGraph.Node node : dotGraph.getNodes()) {
+				long count = getNodeTraffic(graph, node);
+				if (count >= 0) {
+					writeCount(json, node.getId(), count);
+				}
+			}
+			json.endArray();
+			// [edge name, traversals]
+			long max = 0;
+			json.name("edges").beginArray();
+			for (DOTGraph.Edge edge : dotGraph.getEdges()) {
+				long count = getEdgeTraffic(graph, edge, outEdges, inEdges);
+				if (count >= 0) {
+					writeCount(json, edge.getName(), count);
+					max = Math.max(max, count);
+				}
+			}
+			json.endArray();
+			json.name("max").value(max);
+			json.endObject();
+			json.flush();
+			out.write(");\n");
+		} finally {
+			json.close();
+		}
+	}
+
+	private void writeCount(JsonWriter json, String name, long count)
+			throws IOException {
+		json.beginArray();
+		json.value(name);
+		json.value(count);
+		json.endArray();
+	}
+
+	/**
+	 * @return log files of a path : the file itself, or the files of a
+	 *         directory (sorted by name)
+	 */
+	public static List<File> listLogFiles(File path) {
+		List<File> logFiles = new ArrayList<File>();
+		if (path.isFile()) {
+			logFiles.add(path);
+		} else {
+			File[] files = path.listFiles();
+			if (files != null) {
+				Arrays.sort(files);
+				for (File file : files) {
+					if (file.isFile()) {
+						logFiles.add(file);
+					}
+				}
+			}
+		}
+		return logFiles;
+	}
+
+	/**
+	 * Removes the overlay of a SVG file
+	 */
+	public static void delete(File svgFile) {
+		new File(svgFile.getPath() + SUFFIX).delete();
+	}
+}
@@ -0,0 +1,295 @@
+package fr.dgrandemange.txnmgr.flow.docgen;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+/**
+ * Transaction manager flow documentation generation task, in watch mode<br>
+ * Documentation is generated once, then regenerated each time the
+ * transaction manager configuration (or one of its included files) or the
+ * project classes change, until Maven is stopped<br>
+ * Only graphs whose DOT content has changed are converted again to SVG<br>
+ *
+ * @goal watch
+ *
+ * @requiresDependencyResolution runtime
+ *
+ * @threadSafe
+ *
+ * @author dgrandemange
+ */
+public class WatchMojo extends DocGenMojo {
+	// @formatter:off
+
+	/**
+	 * Project compiled classes directory<br>
+	 *
+	 * @parameter expression="${txnmgr-flow-docgen.classesDirectory}" default-value="${project.build.outputDirectory}"
+	 */
+	private String classesDirectory;
+
+	// @formatter:on
+
+	/**
+	 * Delay (in ms) during which subsequent file system events are merged
+	 * into a single regeneration
+	 */
+	private static final long QUIET_PERIOD = 200;
+
+	/**
+	 * Included files references (XInclude, Spring import, external entity)
+	 */
+	private static final Pattern INCLUDE_PATTERN = Pattern
+			.compile("(?:href|resource|SYSTEM)\\s*=?\\s*[\"']([^\"']+)[\"']");
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see fr.dgrandemange.txnmgr.flow.docgen.DocGenMojo#execute()
+	 */
+	@Override
+	public void execute() throws MojoExecutionException, MojoFailureException {
+		super.execute();
+		setIncremental(true);
+
+		WatchService watchService;
+		try {
+			watchService = FileSystems.getDefault().newWatchService();
+		} catch (IOException e) {
+			throw new MojoExecutionException(e.getMessage(), e);
+		}
+
+		try {
+			Map<WatchKey, Path> classesDirKeys = new HashMap<WatchKey, Path>();
+			Map<WatchKey, Path> configDirKeys = new HashMap<WatchKey, Path>();
+			Set<Path> configFiles = new HashSet<Path>();
+			try {
+				registerConfigFiles(watchService, configDirKeys, configFiles);
+				if ((classesDirectory != null)
+						&& new File(classesDirectory).isDirectory()) {
+					registerClassesDir(watchService, classesDirKeys,
+							new File(classesDirectory).toPath());
+				}
+			} catch (IOException e) {
+				throw new MojoExecutionException(e.getMessage(), e);
+			}
+
+			getLog().info(
+					String.format(
+							"Watching '%s' (%d file(s)) and '%s', press Ctrl-C to stop",
+							getTxnmgrConfigPath(), configFiles.size(),
+							classesDirectory));
+
+			while (true) {
+				WatchKey key = watchService.take();
+				boolean configChanged = false;
+				boolean classesChanged = false;
+
+				// Merge events occurring during the quiet period
+				while (key != null) {
+					Path dir = classesDirKeys.get(key);
+					if (dir != null) {
+						classesChanged |= processClassesDirEvents(
+								watchService, classesDirKeys, dir, key);
+					} else {
+						dir = configDirKeys.get(key);
+						if (dir != null) {
+							configChanged |= processConfigDirEvents(
+									configFiles, dir, key);
+						}
+					}
+					if (!key.reset()) {
+						classesDirKeys.remove(key);
+						configDirKeys.remove(key);
+					}
+					key = watchService.poll(QUIET_PERIOD,
+							TimeUnit.MILLISECONDS);
+				}
+
+				if (!(configChanged || classesChanged)) {
+					continue;
+				}
+
+				if (classesChanged) {
+					getLog().info("Project classes changed");
+					resetClassLoader();
+				}
+				if (configChanged) {
+					getLog().info("Transaction manager configuration changed");
+				}
+
+				long start = System.currentTimeMillis();
+				try {
+					super.execute();
+					if (configChanged) {
+						// Included files may have changed too
+						registerConfigFiles(watchService, configDirKeys,
+								configFiles);
+					}
+				} catch (MojoFailureException e) {
+					getLog().error(e.getMessage());
+				} catch (RuntimeException e) {
+					getLog().error(e.getMessage(), e);
+				} catch (IOException e) {
+					getLog().error(e.getMessage());
+				}
+				getLog().info(
+						String.format("Documentation regenerated in %d ms",
+								System.currentTimeMillis() - start));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			try {
+				watchService.close();
+			} catch (IOException e) {
+			}
+		}
+	}
+
+	/**
+	 * @return whether a configuration file has changed
+	 */
+	protected boolean processConfigDirEvents(Set<Path> configFiles,
+			Path dir, WatchKey key) {
+		boolean changed = false;
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == OVERFLOW) {
+				changed = true;
+				continue;
+			}
+			Path path = dir.resolve((Path) event.context());
+			if (configFiles.contains(path)) {
+				getLog().debug("changed : " + path);
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * @return whether a class file has changed
+	 */
+	protected boolean processClassesDirEvents(WatchService watchService,
+			Map<WatchKey, Path> classesDirKeys, Path dir, WatchKey key) {
+		boolean changed = false;
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == OVERFLOW) {
+				changed = true;
+				continue;
+			}
+			Path path = dir.resolve((Path) event.context());
+			if ((event.kind() == ENTRY_CREATE) && Files.isDirectory(path)) {
+				try {
+					registerClassesDir(watchService, classesDirKeys, path);
+				} catch (IOException e) {
+					getLog().warn(e.getMessage());
+				}
+			}
+			getLog().debug("changed : " + path);
+			changed = true;
+		}
+		return changed;
+	}
+
+	/**
+	 * Registers the transaction manager configuration file, and the files it
+	 * includes, for modification watching<br>
+	 * As a WatchService only applies on directories, parent directories are
+	 * registered and events are then filtered on <code>configFiles</code>
+	 */
+	protected void registerConfigFiles(WatchService watchService,
+			Map<WatchKey, Path> configDirKeys, Set<Path> configFiles)
+			throws IOException {
+		Set<Path> files = new HashSet<Path>();
+		collectConfigFiles(new File(getTxnmgrConfigPath()).getAbsoluteFile()
+				.toPath().normalize(), files);
+		configFiles.clear();
+		configFiles.addAll(files);
+
+		for (Path file : files) {
+			Path dir = file.getParent();
+			if (!configDirKeys.containsValue(dir)) {
+				WatchKey key = dir.register(watchService, ENTRY_CREATE,
+						ENTRY_MODIFY, ENTRY_DELETE);
+				configDirKeys.put(key, dir);
+			}
+		}
+	}
+
+	/**
+	 * Recursively collects a configuration file and the files it includes
+	 */
+	protected void collectConfigFiles(Path file, Set<Path> files) {
+		if (!files.add(file) || !Files.isRegularFile(file)) {
+			return;
+		}
+
+		String content;
+		try {
+			content = new String(Files.readAllBytes(file),
+					Charset.forName("ISO-8859-1"));
+		} catch (IOException e) {
+			getLog().warn(e.getMessage());
+			return;
+		}
+
+		Matcher matcher = INCLUDE_PATTERN.matcher(content);
+		while (matcher.find()) {
+			String ref = matcher.group(1);
+			if (ref.startsWith("classpath:") || ref.contains("://")) {
+				continue;
+			}
+			if (ref.startsWith("file:")) {
+				ref = ref.substring("file:".length());
+			}
+			Path included = file.getParent().resolve(ref).normalize();
+			if (Files.isRegularFile(included)) {
+				collectConfigFiles(included, files);
+			}
+		}
+	}
+
+	/**
+	 * Registers a classes directory and all its sub directories
+	 */
+	protected void registerClassesDir(final WatchService watchService,
+			final Map<WatchKey, Path> classesDirKeys, Path root)
+			throws IOException {
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir,
+					BasicFileAttributes attrs) throws IOException {
+				WatchKey key = dir.register(watchService, ENTRY_CREATE,
+						ENTRY_MODIFY, ENTRY_DELETE);
+				classesDirKeys.put(key, dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * txnmgrflow-docgen-maven-plugin
+ * (https://github.com/dgrandemange/txnmgrflow-docgen-maven-plugin)
+ *
+ * Ce fichier ne reprend pas de code de Shell for Java (adiGuba) : il est
+ * rgi, comme le reste du projet, par la licence Apache, version 2.0
+ * (http://www.apache.org/licenses/LICENSE-2.0).
+ */
+package com.developpez.adiguba.shell;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+/**
+ * Tests de BoundedOutputStream : conservation des premiers et derniers
+ * octets, comptage des octets perdus, et rotation du buffer circulaire.
+ *
+ * @author dgrandemange
+ */
+public class BoundedOutputStreamTest {
+
+	private static final Charset ASCII = Charset.forName("US-ASCII");
+
+	@Test
+	public void testKeepsEverythingWithinBounds() {
+		BoundedOutputStream out = new BoundedOutputStream(4, 4);
+		write(out, "abcdef");
+		assertEquals(6, out.size());
+		assertEquals(0, out.getDroppedCount());
+		assertArrayEquals(bytes("abcd"), out.getHead());
+		assertArrayEquals(bytes("ef"), out.getTail());
+		assertEquals("abcdef", out.toString(ASCII));
+	}
+
+	@Test
+	public void testDropsMiddleBytes() {
+		BoundedOutputStream out = new BoundedOutputStream(3, 3);
+		write(out, "abc0123456789xyz");
+		assertEquals(16, out.size());
+		assertEquals(10, out.getDroppedCount());
+		assertArrayEquals(bytes("abc"), out.getHead());
+		assertArrayEquals(bytes("xyz"), out.getTail());
+		assertEquals(String.format("abc%n[... 10 bytes dropped ...]%nxyz"),
+				out.toString(ASCII));
+	}
+
+	@Test
+	public void testTailWrapsAround() {
+		BoundedOutputStream out = new BoundedOutputStream(0, 4);
+		// Ecritures de tailles diverses, y compris octet par octet
+		write(out, "ab");
+		write(out, "cde");
+		out.write('f');
+		write(out, "g");
+		assertArrayEquals(bytes("defg"), out.getTail());
+		write(out, "0123456789");
+		assertArrayEquals(bytes("6789"), out.getTail());
+		assertEquals(13, out.getDroppedCount());
+	}
+
+	@Test
+	public void testWriteSpanningHeadAndTail() {
+		BoundedOutputStream out = new BoundedOutputStream(2, 2);
+		write(out, "a");
+		write(out, "bcdef");
+		assertArrayEquals(bytes("ab"), out.getHead());
+		assertArrayEquals(bytes("ef"), out.getTail());
+		assertEquals(2, out.getDroppedCount());
+	}
+
+	@Test
+	public void testWithoutTail() {
+		BoundedOutputStream out = new BoundedOutputStream(2, 0);
+		write(out, "abcd");
+		assertArrayEquals(bytes("ab"), out.getHead());
+		assertArrayEquals(new byte[0], out.getTail());
+		assertEquals(2, out.getDroppedCount());
+	}
+
+	@Test
+	public void testReset() {
+		BoundedOutputStream out = new BoundedOutputStream(2, 2);
+		write(out, "abcdef");
+		out.reset();
+		assertEquals(0, out.size());
+		assertEquals("", out.toString(ASCII));
+		write(out, "xyz");
+		assertArrayEquals(bytes("xy"), out.getHead());
+		assertArrayEquals(bytes("z"), out.getTail());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeSize() {
+		new BoundedOutputStream(-1, 0);
+	}
+
+	private static byte[] bytes(String s) {
+		return s.getBytes(ASCII);
+	}
+
+	private static void write(BoundedOutputStream out, String s) {
+		byte[] b = bytes(s);
+		out.write(b, 0, b.length);
+	}
+}
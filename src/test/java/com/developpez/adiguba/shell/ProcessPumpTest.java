@@ -0,0 +1,186 @@
+/*
+ * txnmgrflow-docgen-maven-plugin
+ * (https://github.com/dgrandemange/txnmgrflow-docgen-maven-plugin)
+ *
+ * Ce fichier ne reprend pas de code de Shell for Java (adiGuba) : il est
+ * rgi, comme le reste du projet, par la licence Apache, version 2.0
+ * (http://www.apache.org/licenses/LICENSE-2.0).
+ */
+package com.developpez.adiguba.shell;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Tests de ProcessPump : copie des sorties de process rels plus nombreux
+ * que les threads du pump, et cas d'erreur simuls  l'aide de faux
+ * process.
+ *
+ * @author dgrandemange
+ */
+public class ProcessPumpTest {
+
+	/** Volume produit par chaque process, suprieur  la taille d'un pipe. */
+	private static final int OUTPUT_SIZE = 256 * 1024;
+
+	@Test
+	public void testCopiesMoreProcessesThanThreads() throws Exception {
+		Assume.assumeFalse(File.separatorChar == '\\');
+		ProcessPump pump = new ProcessPump(1);
+		try {
+			List<Process> processes = new ArrayList<Process>();
+			List<ByteArrayOutputStream> outputs = new ArrayList<ByteArrayOutputStream>();
+			List<Future<Void>> copies = new ArrayList<Future<Void>>();
+			for (int i = 0; i < 4; i++) {
+				// Les process sont bloqus en criture tant que leur flux
+				// n'est pas lu
+				Process process = new ProcessBuilder("sh", "-c",
+						"head -c " + OUTPUT_SIZE + " /dev/zero").start();
+				process.getOutputStream().close();
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				processes.add(process);
+				outputs.add(out);
+				copies.add(pump.register(process, process.getInputStream(),
+						out));
+				copies.add(pump.register(process, process.getErrorStream(),
+						new ByteArrayOutputStream()));
+			}
+			for (Future<Void> copy : copies) {
+				copy.get(30, TimeUnit.SECONDS);
+			}
+			for (int i = 0; i < processes.size(); i++) {
+				assertEquals(0, processes.get(i).waitFor());
+				assertEquals(OUTPUT_SIZE, outputs.get(i).size());
+			}
+		} finally {
+			pump.close();
+		}
+	}
+
+	@Test
+	public void testCopiesRemainingDataOfExitedProcess() throws Exception {
+		byte[] data = new byte[3 * 8192 + 1];
+		ProcessPump pump = new ProcessPump(1);
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			pump.register(new FakeProcess(true),
+					new ByteArrayInputStream(data), out).get(5,
+					TimeUnit.SECONDS);
+			assertEquals(data.length, out.size());
+		} finally {
+			pump.close();
+		}
+	}
+
+	@Test
+	public void testFailsWhenDataOutlivesProcess() throws Exception {
+		ProcessPump pump = new ProcessPump(1);
+		try {
+			// Flux toujours aliment, comme par un process fils
+			InputStream endless = new InputStream() {
+				@Override
+				public int read() {
+					return 0;
+				}
+
+				@Override
+				public int available() {
+					return 1;
+				}
+			};
+			Future<Void> copy = pump.register(new FakeProcess(true), endless,
+					new ByteArrayOutputStream());
+			try {
+				copy.get(10, TimeUnit.SECONDS);
+				fail("truncated copy reported as complete");
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof IOException);
+			}
+		} finally {
+			pump.close();
+		}
+	}
+
+	@Test
+	public void testCloseCancelsPendingCopies() throws Exception {
+		ProcessPump pump = new ProcessPump(1);
+		Future<Void> copy = pump.register(new FakeProcess(false),
+				new ByteArrayInputStream(new byte[0]),
+				new ByteArrayOutputStream());
+		pump.close();
+		try {
+			copy.get(5, TimeUnit.SECONDS);
+			fail("copy not cancelled");
+		} catch (CancellationException e) {
+			// Attendu
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testRegisterAfterCloseFails() throws Exception {
+		ProcessPump pump = new ProcessPump(1);
+		pump.close();
+		pump.register(new FakeProcess(true), new ByteArrayInputStream(
+				new byte[0]), new ByteArrayOutputStream());
+	}
+
+	/**
+	 * Faux process, termin ou non selon le paramtre du constructeur.
+	 */
+	private static final class FakeProcess extends Process {
+		private final boolean exited;
+
+		FakeProcess(boolean exited) {
+			this.exited = exited;
+		}
+
+		@Override
+		public OutputStream getOutputStream() {
+			return new ByteArrayOutputStream();
+		}
+
+		@Override
+		public InputStream getInputStream() {
+			return new ByteArrayInputStream(new byte[0]);
+		}
+
+		@Override
+		public InputStream getErrorStream() {
+			return new ByteArrayInputStream(new byte[0]);
+		}
+
+		@Override
+		public int waitFor() {
+			return 0;
+		}
+
+		@Override
+		public int exitValue() {
+			if (!this.exited) {
+				throw new IllegalThreadStateException();
+			}
+			return 0;
+		}
+
+		@Override
+		public void destroy() {
+		}
+	}
+}
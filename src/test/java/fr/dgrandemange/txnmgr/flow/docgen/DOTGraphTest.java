@@ -0,0 +1,92 @@
+package fr.dgrandemange.txnmgr.flow.docgen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Checks the nodes and edges of a graph read back from its DOT content, and
+ * their ordering<br>
+ *
+ * @author dgrandemange
+ *
+ */
+public class DOTGraphTest {
+
+	private static final String DOT = "digraph \"flow\" {\n"
+			+ "  check [label=\"org.jpos.Check\"];\n"
+			+ "  sub [label=\"sub flow\", URL=\"subflow\"];\n"
+			+ "  check -> sub [label=\"approved\\l\"];\n"
+			+ "  check -> end [label=\"declined\", tooltip=\"AMOUNT\"];\n"
+			+ "  sub -> end;\n" + "}\n";
+
+	@Test
+	public void testNodes() {
+		DOTGraph graph = DOTGraph.parse(DOT);
+		assertEquals(Arrays.asList("check", "sub", "end"), ids(graph
+				.getNodes()));
+		DOTGraph.Node check = graph.getNode("check");
+		assertEquals(Arrays.asList("check", "org.jpos.Check"),
+				check.getWords());
+		assertNull(check.getLink());
+		assertEquals("subflow", graph.getNode("sub").getLink());
+		// Node only referenced by edges
+		assertEquals(Arrays.asList("end"), graph.getNode("end").getWords());
+		assertNull(graph.getNode("unknown"));
+	}
+
+	@Test
+	public void testEdges() {
+		DOTGraph graph = DOTGraph.parse(DOT);
+		List<DOTGraph.Edge> edges = graph.getEdges();
+		assertEquals(3, edges.size());
+		assertEquals("check->sub", edges.get(0).getName());
+		assertEquals("approved", edges.get(0).getLabel());
+		assertEquals("check", edges.get(1).getTail());
+		assertEquals("end", edges.get(1).getHead());
+		assertEquals(Arrays.asList("declined", "AMOUNT"), edges.get(1)
+				.getWords());
+		assertNull(edges.get(2).getLabel());
+		assertTrue(edges.get(2).getWords().isEmpty());
+	}
+
+	@Test
+	public void testInAndOutEdges() {
+		DOTGraph graph = DOTGraph.parse(DOT);
+		assertEquals(2, graph.getOutEdges().get("check").size());
+		assertTrue(graph.getOutEdges().get("end").isEmpty());
+		assertEquals(2, graph.getInEdges().get("end").size());
+		assertTrue(graph.getInEdges().get("check").isEmpty());
+	}
+
+	@Test
+	public void testSort() {
+		DOTGraph graph = DOTGraph
+				.parse("digraph g { c -> b; a -> c; b -> d }");
+		assertEquals(Arrays.asList("a", "c", "b", "d"), ids(graph.sort()));
+	}
+
+	@Test
+	public void testSortWithCycle() {
+		DOTGraph graph = DOTGraph
+				.parse("digraph g { a -> b; b -> c; c -> b }");
+		List<String> sorted = ids(graph.sort());
+		assertEquals(3, sorted.size());
+		assertEquals("a", sorted.get(0));
+		assertTrue(sorted.containsAll(Arrays.asList("b", "c")));
+	}
+
+	private static List<String> ids(Iterable<DOTGraph.Node> nodes) {
+		List<String> ids = new ArrayList<String>();
+		for (DOTGraph.Node node : nodes) {
+			ids.add(node.getId());
+		}
+		return ids;
+	}
+}
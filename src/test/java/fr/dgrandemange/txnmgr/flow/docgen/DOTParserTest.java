@@ -0,0 +1,101 @@
+package fr.dgrandemange.txnmgr.flow.docgen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Checks the statements and attribute values reported by the DOT parser,
+ * quoted strings escapes included<br>
+ *
+ * @author dgrandemange
+ *
+ */
+public class DOTParserTest {
+
+	/**
+	 * Records statements as "id{attributes}" or "tail->head{attributes}"
+	 */
+	private static class Recorder implements DOTParser.Handler {
+		private final List<String> statements = new ArrayList<String>();
+
+		public void node(String id, Map<String, String> attributes) {
+			statements.add(id + attributes);
+		}
+
+		public void edge(String tail, String head, String edgeOp,
+				Map<String, String> attributes) {
+			statements.add(tail + edgeOp + head + attributes);
+		}
+	}
+
+	private static List<String> parse(String content) {
+		Recorder recorder = new Recorder();
+		DOTParser.parse(content, recorder);
+		return recorder.statements;
+	}
+
+	@Test
+	public void testNodesAndEdges() {
+		assertEquals(Arrays.asList("a{label=A, URL=sub}", "a->b{}",
+				"b->c{label=ok}", "c->d{label=ok}", "d{}"),
+				parse("digraph \"g\" {\n" + "  graph [rankdir=LR];\n"
+						+ "  node [shape=box];\n"
+						+ "  a [label=\"A\", URL=\"sub\"];\n" + "  a -> b;\n"
+						+ "  b -> c -> d [label=ok];\n" + "  d\n" + "}\n"));
+	}
+
+	@Test
+	public void testSubgraphsAndComments() {
+		assertEquals(Arrays.asList("x{}", "x->y{}"),
+				parse("// comment\n" + "# preprocessor line\n"
+						+ "digraph g {\n" + "  /* block\n comment */\n"
+						+ "  subgraph cluster_0 { x }\n" + "  x -> y:port\n"
+						+ "}\n"));
+	}
+
+	@Test
+	public void testUndirectedEdges() {
+		assertEquals(Arrays.asList("a--b{}"), parse("graph g { a -- b }"));
+	}
+
+	@Test
+	public void testEscapedQuote() {
+		assertEquals(Arrays.asList("a{label=say \"hi\", color=red}"),
+				parse("digraph g { a [label=\"say \\\"hi\\\"\", color=red] }"));
+	}
+
+	@Test
+	public void testEscapedBackslashBeforeQuote() {
+		// The quote following an escaped backslash closes the string
+		assertEquals(Arrays.asList("a{label=dir\\\\, color=red}", "b{}"),
+				parse("digraph g { a [label=\"dir\\\\\", color=red]; b }"));
+	}
+
+	@Test
+	public void testHTMLString() {
+		assertEquals(Arrays.asList("a{label=<b>A</b>}"),
+				parse("digraph g { a [label=<<b>A</b>>] }"));
+	}
+
+	@Test
+	public void testToText() {
+		assertEquals("approved", DOTParser.toText("approved\\l"));
+		assertEquals("A", DOTParser.toText("<b>A</b>"));
+	}
+
+	@Test
+	public void testWords() {
+		assertEquals(Arrays.asList("org.jpos.Check", "AMOUNT"),
+				DOTParser.words("org.jpos.Check.\\nAMOUNT -"));
+		assertTrue(DOTParser.isWord("CheckRequest"));
+		assertFalse(DOTParser.isWord("not a word"));
+	}
+}
@@ -0,0 +1,150 @@
+package fr.dgrandemange.txnmgr.flow.docgen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fr.dgrandemange.ctxmgmt.annotation.UpdateContextRules;
+import fr.dgrandemange.txnmgr.flow.docgen.sample.CheckRequest;
+
+/**
+ * Runs two executions of the docgen goal at the same time, as
+ * <code>mvn -T</code> does for two modules, and checks neither one disturbs
+ * the other's SVG conversions (process threads, timeout watchdog)<br>
+ * A dot command may be given through the
+ * <code>txnmgr-flow-docgen.test.dot</code> system property, otherwise a
+ * fake dot shell script is used (test skipped on Windows)<br>
+ *
+ * @author dgrandemange
+ *
+ */
+public class DocGenParallelExecutionTest {
+
+	private static final String CONFIG_RESOURCE = "20_txnmgr.xml";
+
+	private static final String DOC_DIRNAME = "sample";
+
+	private static final String DOT_CMD_PROPERTY = "txnmgr-flow-docgen.test.dot";
+
+	private static final int EXECUTIONS = 2;
+
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	@Test
+	public void testParallelExecutionsConvertAllDOTFiles() throws Exception {
+		final String dotCmd = getDotCmd();
+		final File configFile = new File(tmp.newFolder("config"),
+				CONFIG_RESOURCE);
+		InputStream is = getClass().getResourceAsStream(CONFIG_RESOURCE);
+		try {
+			Files.copy(is, configFile.toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			is.close();
+		}
+
+		final CyclicBarrier barrier = new CyclicBarrier(EXECUTIONS);
+		List<Callable<File>> executions = new ArrayList<Callable<File>>();
+		for (int i = 0; i < EXECUTIONS; i++) {
+			final File buildDir = tmp.newFolder("execution" + i);
+			executions.add(new Callable<File>() {
+				public File call() throws Exception {
+					barrier.await();
+					return generate(configFile, buildDir, dotCmd);
+				}
+			});
+		}
+
+		List<File> docDirs = new ArrayList<File>();
+		ExecutorService executor = Executors.newFixedThreadPool(EXECUTIONS);
+		try {
+			for (Future<File> future : executor.invokeAll(executions)) {
+				// rethrows any execution failure
+				docDirs.add(future.get());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		List<String> firstFiles = DocGenReproducibilityTest
+				.listFiles(docDirs.get(0));
+		for (File docDir : docDirs) {
+			List<String> files = DocGenReproducibilityTest.listFiles(docDir);
+			assertEquals(firstFiles, files);
+			int dotFiles = 0;
+			for (String path : files) {
+				if (path.endsWith(".dot")) {
+					dotFiles++;
+					assertTrue(path + " not converted",
+							files.contains(path + ".svg"));
+				}
+			}
+			assertFalse(dotFiles == 0);
+		}
+	}
+
+	/**
+	 * @return generated documentation directory
+	 */
+	protected File generate(File configFile, File buildDir, String dotCmd)
+			throws Exception {
+		DocGenMojo mojo = new DocGenMojo();
+		mojo.setLog(new SystemStreamLog());
+		mojo.setTxnmgrConfigPath(configFile.getAbsolutePath());
+		mojo.setBuildDirectory(buildDir.getAbsolutePath());
+		mojo.setDocGenDirName(DOC_DIRNAME);
+		mojo.setAlias("sample workflow");
+		mojo.setSubflowMode(true);
+		mojo.setGraphVizDotCmdPath(dotCmd);
+		mojo.setGraphVizConcurrency(2);
+		mojo.setGraphVizTimeout(60);
+		List<String> classpathElements = new ArrayList<String>();
+		classpathElements.add(DocGenReproducibilityTest
+				.getLocation(CheckRequest.class));
+		classpathElements.add(DocGenReproducibilityTest
+				.getLocation(UpdateContextRules.class));
+		mojo.setRuntimeClasspathElements(classpathElements);
+		mojo.execute();
+		return new File(new File(buildDir, "txnmgrDocGen"), DOC_DIRNAME);
+	}
+
+	/**
+	 * @return dot command given as system property, or else a fake dot
+	 *         script which writes a minimal SVG next to the DOT file
+	 */
+	protected String getDotCmd() throws Exception {
+		String dotCmd = System.getProperty(DOT_CMD_PROPERTY);
+		if (dotCmd != null) {
+			return dotCmd;
+		}
+		Assume.assumeFalse(File.separatorChar == '\\');
+		File script = new File(tmp.newFolder("bin"), "dot");
+		Files.write(script.toPath(), Arrays.asList("#!/bin/sh",
+				"for last; do :; done",
+				"echo '<svg xmlns=\"http://www.w3.org/2000/svg\"><g id=\"graph0\" class=\"graph\"><title>x</title></g></svg>' > \"$last.svg\""),
+				Charset.forName("US-ASCII"));
+		Assume.assumeTrue(script.setExecutable(true));
+		return script.getAbsolutePath();
+	}
+}
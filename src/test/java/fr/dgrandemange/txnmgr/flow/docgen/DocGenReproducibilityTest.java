@@ -0,0 +1,117 @@
+package fr.dgrandemange.txnmgr.flow.docgen;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fr.dgrandemange.ctxmgmt.annotation.UpdateContextRules;
+import fr.dgrandemange.txnmgr.flow.docgen.sample.CheckRequest;
+
+/**
+ * Generates the documentation of a sample configuration twice, in two
+ * distinct build directories, and checks both documentation directories are
+ * byte for byte identical<br>
+ * SVG conversion is only covered when a dot command is given through the
+ * <code>txnmgr-flow-docgen.test.dot</code> system property<br>
+ *
+ * @author dgrandemange
+ *
+ */
+public class DocGenReproducibilityTest {
+
+	private static final String CONFIG_RESOURCE = "20_txnmgr.xml";
+
+	private static final String DOC_DIRNAME = "sample";
+
+	private static final String DOT_CMD_PROPERTY = "txnmgr-flow-docgen.test.dot";
+
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	@Test
+	public void testDocumentationIsByteReproducible() throws Exception {
+		File configFile = new File(tmp.newFolder("config"), CONFIG_RESOURCE);
+		InputStream is = getClass().getResourceAsStream(CONFIG_RESOURCE);
+		try {
+			Files.copy(is, configFile.toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			is.close();
+		}
+
+		File firstDocDir = generate(configFile, tmp.newFolder("first"));
+		File secondDocDir = generate(configFile, tmp.newFolder("second"));
+
+		List<String> firstFiles = listFiles(firstDocDir);
+		assertFalse(firstFiles.isEmpty());
+		assertEquals(firstFiles, listFiles(secondDocDir));
+		for (String path : firstFiles) {
+			assertArrayEquals(path,
+					Files.readAllBytes(new File(firstDocDir, path).toPath()),
+					Files.readAllBytes(new File(secondDocDir, path).toPath()));
+		}
+	}
+
+	/**
+	 * @return generated documentation directory
+	 */
+	protected File generate(File configFile, File buildDir) throws Exception {
+		DocGenMojo mojo = new DocGenMojo();
+		mojo.setLog(new SystemStreamLog());
+		mojo.setTxnmgrConfigPath(configFile.getAbsolutePath());
+		mojo.setBuildDirectory(buildDir.getAbsolutePath());
+		mojo.setDocGenDirName(DOC_DIRNAME);
+		mojo.setAlias("sample workflow");
+		mojo.setSubflowMode(true);
+		mojo.setGraphVizDotCmdPath(System.getProperty(DOT_CMD_PROPERTY));
+		mojo.setGraphVizConcurrency(2);
+		List<String> classpathElements = new ArrayList<String>();
+		classpathElements.add(getLocation(CheckRequest.class));
+		classpathElements.add(getLocation(UpdateContextRules.class));
+		mojo.setRuntimeClasspathElements(classpathElements);
+		mojo.execute();
+		return new File(new File(buildDir, "txnmgrDocGen"), DOC_DIRNAME);
+	}
+
+	protected static String getLocation(Class<?> clazz) throws Exception {
+		return new File(clazz.getProtectionDomain().getCodeSource()
+				.getLocation().toURI()).getAbsolutePath();
+	}
+
+	/**
+	 * @return relative paths of all files under a directory, sorted
+	 */
+	protected static List<String> listFiles(File dir) {
+		List<String> paths = new ArrayList<String>();
+		listFiles(dir, "", paths);
+		Collections.sort(paths);
+		return paths;
+	}
+
+	private static void listFiles(File dir, String prefix, List<String> paths) {
+		File[] children = dir.listFiles();
+		if (children == null) {
+			return;
+		}
+		for (File child : children) {
+			if (child.isDirectory()) {
+				listFiles(child, prefix + child.getName() + "/", paths);
+			} else {
+				paths.add(prefix + child.getName());
+			}
+		}
+	}
+}
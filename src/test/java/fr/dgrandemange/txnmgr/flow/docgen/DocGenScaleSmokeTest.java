@@ -0,0 +1,134 @@
+package fr.dgrandemange.txnmgr.flow.docgen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fr.dgrandemange.ctxmgmt.annotation.UpdateContextRules;
+
+/**
+ * Smoke run of the docgen goal against a synthetic configuration of about
+ * 1k participants (nested groups, compiled participant classes annotated
+ * with <code>@UpdateContextRules</code>), checking every group gets its
+ * graph and participant annotations get resolved<br>
+ * Duration and heap peak are only bounded when the
+ * <code>txnmgr-flow-docgen.test.maxSeconds</code> and/or
+ * <code>txnmgr-flow-docgen.test.maxHeapMb</code> system properties are set,
+ * as done by the <code>scale-limits</code> profile, so that a loaded build
+ * machine does not make the build flaky<br>
+ * Larger configurations (10k, 50k participants) are left to the benchmarks
+ * <code>ScaleSuite</code><br>
+ *
+ * @author dgrandemange
+ *
+ */
+public class DocGenScaleSmokeTest {
+
+	private static final String MAX_SECONDS_PROPERTY = "txnmgr-flow-docgen.test.maxSeconds";
+
+	private static final String MAX_HEAP_MB_PROPERTY = "txnmgr-flow-docgen.test.maxHeapMb";
+
+	private static final String DOC_DIRNAME = "smoke";
+
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	@Test
+	public void testThousandParticipants() throws Exception {
+		// 10 root groups, each one dispatching to 3 nested groups, down to 2
+		// levels : 130 groups of 7 participants, plus their selectors
+		SyntheticTxnMgrConfig config = new SyntheticTxnMgrConfig().groups(10)
+				.participantsPerGroup(7).depth(2).fanOut(3)
+				.compileClasses(true);
+		File configDir = tmp.newFolder("config");
+		File configFile = config.write(configDir);
+		File buildDir = tmp.newFolder("out");
+
+		DocGenMojo mojo = new DocGenMojo();
+		mojo.setLog(new SystemStreamLog());
+		mojo.setTxnmgrConfigPath(configFile.getAbsolutePath());
+		mojo.setBuildDirectory(buildDir.getAbsolutePath());
+		mojo.setDocGenDirName(DOC_DIRNAME);
+		mojo.setAlias("smoke workflow");
+		mojo.setSubflowMode(true);
+		List<String> classpathElements = new ArrayList<String>();
+		classpathElements.add(new File(configDir,
+				SyntheticTxnMgrConfig.CLASSES_DIRNAME).getAbsolutePath());
+		classpathElements.add(DocGenReproducibilityTest
+				.getLocation(UpdateContextRules.class));
+		mojo.setRuntimeClasspathElements(classpathElements);
+
+		System.gc();
+		resetHeapPeak();
+		long start = System.nanoTime();
+		mojo.execute();
+		long elapsedSeconds = TimeUnit.NANOSECONDS.toSeconds(System
+				.nanoTime() - start);
+		long heapPeakMb = getHeapPeak() / (1024 * 1024);
+
+		File docDir = new File(new File(buildDir, "txnmgrDocGen"), DOC_DIRNAME);
+		int dotFiles = 0;
+		for (String path : DocGenReproducibilityTest.listFiles(docDir)) {
+			if (path.endsWith(".dot")) {
+				dotFiles++;
+			}
+		}
+		// One graph per group, plus the root one
+		assertEquals(config.getGroupCount() + 1, dotFiles);
+		String searchIndex = new String(Files.readAllBytes(new File(docDir,
+				SearchIndex.FILENAME).toPath()), Charset.forName("UTF-8"));
+		assertTrue("participant class not indexed",
+				searchIndex.contains("\"synthetic.participant.Participant1_2_2_6\""));
+		assertTrue("participant annotations not resolved",
+				searchIndex.contains("\"PARTICIPANT1_2_2_6_OUT\""));
+
+		Long maxSeconds = Long.getLong(MAX_SECONDS_PROPERTY);
+		if (maxSeconds != null) {
+			assertTrue(String.format("%d participants took %ds (max %ds)",
+					config.getParticipantCount(), elapsedSeconds, maxSeconds),
+					elapsedSeconds <= maxSeconds);
+		}
+		Long maxHeapMb = Long.getLong(MAX_HEAP_MB_PROPERTY);
+		if (maxHeapMb != null) {
+			assertTrue(String.format(
+					"%d participants peaked at %dMB of heap (max %dMB)",
+					config.getParticipantCount(), heapPeakMb, maxHeapMb),
+					heapPeakMb <= maxHeapMb);
+		}
+	}
+
+	protected static void resetHeapPeak() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+			}
+		}
+	}
+
+	/**
+	 * @return sum of heap memory pools peak usage (in bytes)
+	 */
+	protected static long getHeapPeak() {
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		return peak;
+	}
+}
@@ -0,0 +1,358 @@
+package fr.dgrandemange.txnmgr.flow.docgen;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import fr.dgrandemange.ctxmgmt.annotation.UpdateContextRules;
+
+/**
+ * Synthetic jPOS transaction manager configuration generator, shared by the
+ * scale smoke test and the benchmarks (through the test jar)<br>
+ * A root <code>Switch</code> selector dispatches to <code>groups</code>
+ * groups of <code>participantsPerGroup</code> participants each<br>
+ * Down to <code>depth</code> levels, each group ends with another
+ * <code>Switch</code> selector, dispatching to <code>fanOut</code> nested
+ * groups<br>
+ * Participant classes may also be generated and compiled, each one being
+ * annotated with <code>@UpdateContextRules</code><br>
+ * 
+ * @author dgrandemange
+ * 
+ */
+public class SyntheticTxnMgrConfig {
+
+	public static final String CONFIG_FILENAME = "20_txnmgr.xml";
+
+	public static final String CLASSES_DIRNAME = "classes";
+
+	private static final String SELECTOR_CLASS = "org.jpos.transaction.participant.Switch";
+
+	private static final String PACKAGE_NAME = "synthetic.participant";
+
+	/**
+	 * Maximum number of source files given to a single compiler invocation,
+	 * so that compiler memory stays bounded on large configurations
+	 */
+	private static final int COMPILE_BATCH_SIZE = 2000;
+
+	private int groups = 10;
+
+	private int participantsPerGroup = 10;
+
+	private int depth = 0;
+
+	private int fanOut = 2;
+
+	private boolean compileClasses = false;
+
+	/**
+	 * @param groups
+	 *            number of groups the root selector dispatches to
+	 */
+	public SyntheticTxnMgrConfig groups(int groups) {
+		this.groups = groups;
+		return this;
+	}
+
+	public SyntheticTxnMgrConfig participantsPerGroup(int participantsPerGroup) {
+		this.participantsPerGroup = participantsPerGroup;
+		return this;
+	}
+
+	/**
+	 * @param depth
+	 *            number of nested selector levels below the root groups (0
+	 *            for none)
+	 */
+	public SyntheticTxnMgrConfig depth(int depth) {
+		this.depth = depth;
+		return this;
+	}
+
+	/**
+	 * @param fanOut
+	 *            number of groups each nested selector dispatches to
+	 */
+	public SyntheticTxnMgrConfig fanOut(int fanOut) {
+		this.fanOut = fanOut;
+		return this;
+	}
+
+	/**
+	 * @param compileClasses
+	 *            whether participant classes should be generated and compiled
+	 *            (requires a JDK)
+	 */
+	public SyntheticTxnMgrConfig compileClasses(boolean compileClasses) {
+		this.compileClasses = compileClasses;
+		return this;
+	}
+
+	/**
+	 * @return number of groups in the generated configuration
+	 */
+	public int getGroupCount() {
+		return getGroupPaths().size();
+	}
+
+	/**
+	 * @return number of participants (selectors included) in the generated
+	 *         configuration
+	 */
+	public int getParticipantCount() {
+		int count = 1;
+		for (String path : getGroupPaths()) {
+			count += participantsPerGroup + (hasNestedGroups(path) ? 1 : 0);
+		}
+		return count;
+	}
+
+	/**
+	 * @return group paths, top level groups first ("0", "1", ..., then
+	 *         "0_0", "0_1", ...)
+	 */
+	protected List<String> getGroupPaths() {
+		List<String> paths = new ArrayList<String>();
+		for (int g = 0; g < groups; g++) {
+			paths.add(Integer.toString(g));
+		}
+		for (int i = 0; i < paths.size(); i++) {
+			String path = paths.get(i);
+			if (hasNestedGroups(path)) {
+				for (int f = 0; f < fanOut; f++) {
+					paths.add(path + "_" + f);
+				}
+			}
+		}
+		return paths;
+	}
+
+	/**
+	 * @return whether the group ends with a selector dispatching to nested
+	 *         groups
+	 */
+	protected boolean hasNestedGroups(String path) {
+		int level = path.split("_").length;
+		return (level <= depth) && (fanOut > 0);
+	}
+
+	/**
+	 * Writes configuration file <code>20_txnmgr.xml</code> in
+	 * <code>dir</code>, and compiled participant classes under
+	 * <code>dir/classes</code> if asked
+	 * 
+	 * @param dir
+	 *            output directory
+	 * @return configuration file
+	 * @throws IOException
+	 */
+	public File write(File dir) throws IOException {
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException(String.format(
+					"unable to create directory '%s'", dir));
+		}
+
+		List<String> groupPaths = getGroupPaths();
+		File configFile = new File(dir, CONFIG_FILENAME);
+		PrintWriter pw = new PrintWriter(new BufferedWriter(
+				new OutputStreamWriter(new FileOutputStream(configFile),
+						"ISO-8859-1")));
+		try {
+			pw.println("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>");
+			pw.println("<txnmgr name=\"txnmgr\" logger=\"Q2\" class=\"org.jpos.transaction.TransactionManager\">");
+			pw.println("\t<property name=\"space\" value=\"tspace:default\" />");
+			pw.println("\t<property name=\"queue\" value=\"TXNMGR\" />");
+			pw.println();
+			List<String> topLevelPaths = new ArrayList<String>();
+			for (int g = 0; g < groups; g++) {
+				topLevelPaths.add(Integer.toString(g));
+			}
+			writeSelector(pw, "\t", topLevelPaths);
+
+			for (String path : groupPaths) {
+				pw.println();
+				pw.println(String.format("\t<group name=\"%s\">",
+						groupName(path)));
+				for (int p = 0; p < participantsPerGroup; p++) {
+					pw.println(String.format(
+							"\t\t<participant class=\"%s\" logger=\"Q2\" />",
+							participantClassName(path, p)));
+				}
+				if (hasNestedGroups(path)) {
+					List<String> nestedPaths = new ArrayList<String>();
+					for (int f = 0; f < fanOut; f++) {
+						nestedPaths.add(path + "_" + f);
+					}
+					writeSelector(pw, "\t\t", nestedPaths);
+				}
+				pw.println("\t</group>");
+			}
+			pw.println("</txnmgr>");
+		} finally {
+			pw.close();
+		}
+		if (pw.checkError()) {
+			throw new IOException(String.format("unable to write '%s'",
+					configFile));
+		}
+
+		if (compileClasses) {
+			compileParticipantClasses(new File(dir, CLASSES_DIRNAME),
+					groupPaths);
+		}
+
+		return configFile;
+	}
+
+	protected void writeSelector(PrintWriter pw, String indent,
+			List<String> paths) {
+		pw.println(String.format("%s<participant class=\"%s\" logger=\"Q2\">",
+				indent, SELECTOR_CLASS));
+		for (String path : paths) {
+			pw.println(String.format(
+					"%s\t<property name=\"%s\" value=\"%s\" />", indent,
+					transitionId(path), groupName(path)));
+		}
+		pw.println(String.format("%s</participant>", indent));
+	}
+
+	protected void compileParticipantClasses(File classesDir,
+			List<String> groupPaths) throws IOException {
+		File sourcesDir = new File(classesDir.getParentFile(), "src");
+		List<File> sourceFiles = new ArrayList<File>();
+		for (String path : groupPaths) {
+			for (int p = 0; p < participantsPerGroup; p++) {
+				sourceFiles.add(writeParticipantSource(sourcesDir, path, p));
+				if (sourceFiles.size() == COMPILE_BATCH_SIZE) {
+					compile(classesDir, sourceFiles);
+					sourceFiles.clear();
+				}
+			}
+		}
+		if (!sourceFiles.isEmpty()) {
+			compile(classesDir, sourceFiles);
+		}
+	}
+
+	protected File writeParticipantSource(File sourcesDir, String path, int p)
+			throws IOException {
+		String simpleName = participantSimpleName(path, p);
+		File packageDir = new File(sourcesDir, PACKAGE_NAME.replace('.',
+				File.separatorChar));
+		if (!packageDir.isDirectory() && !packageDir.mkdirs()) {
+			throw new IOException(String.format(
+					"unable to create directory '%s'", packageDir));
+		}
+
+		File sourceFile = new File(packageDir, simpleName + ".java");
+		PrintWriter pw = new PrintWriter(new OutputStreamWriter(
+				new FileOutputStream(sourceFile), "ISO-8859-1"));
+		try {
+			pw.println(String.format("package %s;", PACKAGE_NAME));
+			pw.println();
+			pw.println("import fr.dgrandemange.ctxmgmt.annotation.UpdateContextRule;");
+			pw.println("import fr.dgrandemange.ctxmgmt.annotation.UpdateContextRules;");
+			pw.println();
+			pw.println("@UpdateContextRules({");
+			pw.println(String.format(
+					"\t@UpdateContextRule(attrNames = { \"%s_IN\", \"%s_OUT\" }),",
+					simpleName.toUpperCase(), simpleName.toUpperCase()));
+			pw.println(String.format(
+					"\t@UpdateContextRule(id = \"%s\", attrNames = { \"%s_ERR\" })",
+					transitionId(path), simpleName.toUpperCase()));
+			pw.println("})");
+			pw.println(String.format("public class %s {", simpleName));
+			pw.println("}");
+		} finally {
+			pw.close();
+		}
+		return sourceFile;
+	}
+
+	/**
+	 * Compiles source files in a single compiler invocation (source files are
+	 * not passed on a command line, whatever their number)
+	 */
+	protected void compile(File classesDir, List<File> sourceFiles)
+			throws IOException {
+		if (!classesDir.isDirectory() && !classesDir.mkdirs()) {
+			throw new IOException(String.format(
+					"unable to create directory '%s'", classesDir));
+		}
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		if (compiler == null) {
+			throw new IOException(
+					"no Java compiler available (a JDK is required)");
+		}
+
+		StandardJavaFileManager fileManager = compiler.getStandardFileManager(
+				null, null, Charset.forName("ISO-8859-1"));
+		try {
+			List<String> options = Arrays.asList("-nowarn", "-d",
+					classesDir.getAbsolutePath(), "-cp",
+					getAnnotationsClasspath());
+			StringWriter errors = new StringWriter();
+			Boolean success = compiler.getTask(errors, fileManager, null,
+					options, null,
+					fileManager.getJavaFileObjectsFromFiles(sourceFiles))
+					.call();
+			if (!Boolean.TRUE.equals(success)) {
+				throw new IOException(
+						"participant classes compilation failed : " + errors);
+			}
+		} finally {
+			fileManager.close();
+		}
+	}
+
+	protected String getAnnotationsClasspath() {
+		try {
+			return new File(UpdateContextRules.class.getProtectionDomain()
+					.getCodeSource().getLocation().toURI()).getAbsolutePath();
+		} catch (Exception e) {
+			return System.getProperty("java.class.path");
+		}
+	}
+
+	protected String groupName(String path) {
+		return "group" + path;
+	}
+
+	protected String transitionId(String path) {
+		return "T" + path;
+	}
+
+	protected String participantSimpleName(String path, int p) {
+		return String.format("Participant%s_%d", path, p);
+	}
+
+	protected String participantClassName(String path, int p) {
+		return PACKAGE_NAME + "." + participantSimpleName(path, p);
+	}
+
+	/**
+	 * Deletes a generated directory
+	 */
+	public static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
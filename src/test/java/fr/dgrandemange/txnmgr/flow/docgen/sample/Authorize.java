@@ -0,0 +1,17 @@
+package fr.dgrandemange.txnmgr.flow.docgen.sample;
+
+import fr.dgrandemange.ctxmgmt.annotation.UpdateContextRule;
+import fr.dgrandemange.ctxmgmt.annotation.UpdateContextRules;
+
+/**
+ * Sample participant, authorizing the request
+ * 
+ * @author dgrandemange
+ * 
+ */
+@UpdateContextRules({
+		@UpdateContextRule(attrNames = { "AUTH_RESPONSE", "RESPONSE_CODE" }),
+		@UpdateContextRule(id = "declined", attrNames = { "DECLINE_REASON" })
+})
+public class Authorize {
+}
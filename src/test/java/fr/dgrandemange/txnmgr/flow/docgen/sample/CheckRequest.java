@@ -0,0 +1,17 @@
+package fr.dgrandemange.txnmgr.flow.docgen.sample;
+
+import fr.dgrandemange.ctxmgmt.annotation.UpdateContextRule;
+import fr.dgrandemange.ctxmgmt.annotation.UpdateContextRules;
+
+/**
+ * Sample participant, checking the incoming request
+ * 
+ * @author dgrandemange
+ * 
+ */
+@UpdateContextRules({
+		@UpdateContextRule(attrNames = { "REQUEST" }),
+		@UpdateContextRule(id = "invalid", attrNames = { "RESPONSE_CODE" })
+})
+public class CheckRequest {
+}
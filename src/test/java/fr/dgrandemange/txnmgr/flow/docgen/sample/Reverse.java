@@ -0,0 +1,16 @@
+package fr.dgrandemange.txnmgr.flow.docgen.sample;
+
+import fr.dgrandemange.ctxmgmt.annotation.UpdateContextRule;
+import fr.dgrandemange.ctxmgmt.annotation.UpdateContextRules;
+
+/**
+ * Sample participant, reversing a declined authorization
+ * 
+ * @author dgrandemange
+ * 
+ */
+@UpdateContextRules({
+		@UpdateContextRule(attrNames = { "REVERSAL" })
+})
+public class Reverse {
+}
@@ -0,0 +1,16 @@
+package fr.dgrandemange.txnmgr.flow.docgen.sample;
+
+import fr.dgrandemange.ctxmgmt.annotation.UpdateContextRule;
+import fr.dgrandemange.ctxmgmt.annotation.UpdateContextRules;
+
+/**
+ * Sample participant, sending the response
+ * 
+ * @author dgrandemange
+ * 
+ */
+@UpdateContextRules({
+		@UpdateContextRule(attrNames = { "RESPONSE" })
+})
+public class SendResponse {
+}